@@ -0,0 +1,79 @@
+package microservices.book.benchmarks;
+
+import microservices.book.gamification.challenge.ChallengeSolvedEvent;
+import microservices.book.gamification.game.badgeprocessors.BadgeProcessor;
+import microservices.book.gamification.game.domain.BadgeType;
+import microservices.book.gamification.game.domain.UserStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the chain of badge processors, as GameServiceImpl runs it, over
+ * users with different scores and badges.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BadgeProcessorsBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    private List<BadgeProcessor> badgeProcessors;
+    private UserStats[] stats;
+    private ChallengeSolvedEvent[] events;
+    private int next;
+
+    /*
+     * The processors come from a context that only scans their package, so
+     * the chain has the same processors as the service.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+                BadgeProcessor.class.getPackageName())) {
+            badgeProcessors = new ArrayList<>(context.getBeansOfType(BadgeProcessor.class).values());
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        stats = new UserStats[SAMPLES];
+        events = new ChallengeSolvedEvent[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long cardCount = random.nextLong(1, 60);
+            long badges = random.nextBoolean() ? BadgeType.FIRST_WON.mask() : 0;
+            stats[i] = new UserStats(cardCount * 10, cardCount, 0, 0, badges);
+            events[i] = new ChallengeSolvedEvent(i, true, random.nextInt(11, 100),
+                    random.nextInt(11, 100), i, "user_" + i);
+        }
+    }
+
+    @Benchmark
+    public List<BadgeType> processForBadges() {
+        int i = next++ & (SAMPLES - 1);
+        UserStats userStats = stats[i];
+        ChallengeSolvedEvent event = events[i];
+        return badgeProcessors.stream()
+                .filter(bp -> !userStats.hasBadge(bp.badgeType()))
+                .map(bp -> bp.processForOptionalBadge(userStats, event))
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+    }
+}
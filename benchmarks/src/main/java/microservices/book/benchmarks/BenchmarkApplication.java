@@ -0,0 +1,50 @@
+package microservices.book.benchmarks;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Spring context with the game logic of the Gamification microservice and an
+ * in-memory H2 database, seeded by {@link DataSeeder}.
+ * <p>
+ * The benchmarks are packaged in target/benchmarks.jar and run with the
+ * JMH options, e.g. to compare two data sizes of a single benchmark:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar GameServiceBenchmark -p users=1000 -p cards=10000,1000000
+ * </pre>
+ * Running them before and after a change, on the same machine and with the
+ * same parameters, gives comparable numbers.
+ */
+/*
+ * Only the game package is scanned: the benchmarks don't need the web layer,
+ * RabbitMQ or Consul, and they would add noise to the measurements (or fail to
+ * connect). The configuration comes from benchmark.properties instead of the
+ * application.properties of the service for the same reason.
+ */
+@SpringBootApplication(scanBasePackages = "microservices.book.gamification.game",
+        exclude = RabbitAutoConfiguration.class)
+@EnableJpaRepositories(basePackages = "microservices.book.gamification.game")
+@EntityScan(basePackages = "microservices.book.gamification.game.domain")
+@Import(DataSeeder.class)
+public class BenchmarkApplication {
+
+    /**
+     * Starts the context and seeds the database.
+     *
+     * @param users the number of users with score cards
+     * @param cards the number of score cards, spread across the users
+     */
+    public static ConfigurableApplicationContext start(final int users, final long cards) {
+        return new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.config.name=benchmark",
+                        "--benchmark.users=" + users,
+                        "--benchmark.cards=" + cards);
+    }
+}
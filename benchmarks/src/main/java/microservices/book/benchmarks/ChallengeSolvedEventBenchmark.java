@@ -0,0 +1,106 @@
+package microservices.book.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import microservices.book.gamification.challenge.ChallengeSolvedEvent;
+import microservices.book.gamification.challenge.ChallengeSolvedEventBinaryConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the serialization of the events exchanged through RabbitMQ, in JSON
+ * and in the compact binary format (see ChallengeSolvedEventBinaryConverter):
+ * reading them with the ObjectMapper or the binary decoder alone and through
+ * the message converter that the listeners use (configured as in
+ * AMQPConfiguration), and writing them.
+ * The size of the payload in each format is printed when the trial starts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChallengeSolvedEventBenchmark {
+
+    private static final String PAYLOAD = "{\"attemptId\":4815162342,\"correct\":true," +
+            "\"factorA\":42,\"factorB\":37,\"userId\":1234,\"userAlias\":\"john_doe\"}";
+
+    private CompositeMessageConverter converter;
+    private ObjectMapper objectMapper;
+    private ChallengeSolvedEvent event;
+    private byte[] payload;
+    private byte[] binaryPayload;
+    private Message<byte[]> message;
+    private Message<byte[]> binaryMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        MappingJackson2MessageConverter jsonConverter = new MappingJackson2MessageConverter();
+        jsonConverter.getObjectMapper().registerModule(
+                new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+        converter = new CompositeMessageConverter(List.of(
+                new ChallengeSolvedEventBinaryConverter(), jsonConverter));
+        objectMapper = jsonConverter.getObjectMapper();
+        payload = PAYLOAD.getBytes(StandardCharsets.UTF_8);
+        event = objectMapper.readValue(payload, ChallengeSolvedEvent.class);
+        binaryPayload = ChallengeSolvedEventBinaryConverter.encode(event);
+        message = MessageBuilder.withPayload(payload)
+                .setHeader("contentType", "application/json")
+                .build();
+        binaryMessage = MessageBuilder.withPayload(binaryPayload)
+                .setHeader("contentType", ChallengeSolvedEventBinaryConverter.CONTENT_TYPE)
+                .build();
+        System.out.printf("%nBytes per event: JSON %d, binary %d%n",
+                payload.length, binaryPayload.length);
+    }
+
+    @Benchmark
+    public ChallengeSolvedEvent objectMapper() throws IOException {
+        return objectMapper.readValue(payload, ChallengeSolvedEvent.class);
+    }
+
+    @Benchmark
+    public Object messageConverter() {
+        return converter.fromMessage(message, ChallengeSolvedEvent.class);
+    }
+
+    @Benchmark
+    public ChallengeSolvedEvent binaryDecode() throws IOException {
+        return ChallengeSolvedEventBinaryConverter.decode(binaryPayload);
+    }
+
+    @Benchmark
+    public Object binaryMessageConverter() {
+        return converter.fromMessage(binaryMessage, ChallengeSolvedEvent.class);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws IOException {
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return ChallengeSolvedEventBinaryConverter.encode(event);
+    }
+}
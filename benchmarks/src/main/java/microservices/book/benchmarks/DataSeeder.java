@@ -0,0 +1,77 @@
+package microservices.book.benchmarks;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import microservices.book.gamification.game.domain.BadgeType;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+/**
+ * Fills the database with score cards, the user score aggregates and the
+ * badges that those scores would have won.
+ */
+/*
+ * Going through JPA would take hours for millions of cards, so the rows are
+ * generated with plain SQL inside H2. They're deterministic: the same users
+ * and cards always give the same data, so the numbers can be compared between
+ * runs. The users are picked with X * X mod users, which spreads the cards
+ * unevenly and avoids a leader board where everybody has the same score.
+ * The ids come from the same sequences Hibernate uses, so the entities saved
+ * by the benchmarks don't collide with the seeded ones.
+ * This bean depends on the EntityManagerFactory, so the schema already exists,
+ * and it runs before the UserScoreReconciler loads the leader board in memory.
+ */
+@Slf4j
+class DataSeeder implements InitializingBean {
+
+    private static final Map<BadgeType, Long> BADGE_THRESHOLDS = Map.of(
+            BadgeType.FIRST_WON, 0L,
+            BadgeType.BRONZE, 50L,
+            BadgeType.SILVER, 150L,
+            BadgeType.GOLD, 400L);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int users;
+    private final long cards;
+
+    DataSeeder(final JdbcTemplate jdbcTemplate,
+               final EntityManagerFactory entityManagerFactory,
+               @Value("${benchmark.users}") final int users,
+               @Value("${benchmark.cards}") final long cards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.users = users;
+        this.cards = cards;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        long start = System.currentTimeMillis();
+        jdbcTemplate.update("INSERT INTO score_card " +
+                "(card_id, user_id, attempt_id, score_timestamp, score) " +
+                "SELECT NEXT VALUE FOR score_card_seq, 1 + MOD(X * X, ?), X, X, 10 " +
+                "FROM SYSTEM_RANGE(1, ?)", users, cards);
+        jdbcTemplate.update("INSERT INTO user_score " +
+                "(user_id, total_score, card_count, last_score_timestamp, " +
+                "current_streak, longest_streak) " +
+                "SELECT user_id, SUM(score), COUNT(*), MAX(score_timestamp), 0, 0 " +
+                "FROM score_card GROUP BY user_id");
+        BADGE_THRESHOLDS.forEach((badgeType, threshold) ->
+                jdbcTemplate.update("INSERT INTO badge_card " +
+                        "(badge_id, user_id, badge_timestamp, badge_type) " +
+                        "SELECT NEXT VALUE FOR badge_card_seq, user_id, last_score_timestamp, ? " +
+                        "FROM user_score WHERE total_score > ?",
+                        badgeType.ordinal(), threshold));
+        log.info("Seeded {} score cards for {} users in {} ms",
+                cards, users, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return the first attempt id that is not used by the seeded cards
+     */
+    long nextAttemptId() {
+        return cards + 1;
+    }
+}
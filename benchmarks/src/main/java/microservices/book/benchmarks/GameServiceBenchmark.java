@@ -0,0 +1,36 @@
+package microservices.book.benchmarks;
+
+import microservices.book.gamification.challenge.ChallengeSolvedEvent;
+import microservices.book.gamification.game.GameService;
+import microservices.book.gamification.game.GameService.GameResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the processing of a correct attempt: storing the score card,
+ * updating the aggregate of the user and checking the badges, all in the
+ * same transaction.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GameServiceBenchmark {
+
+    @Benchmark
+    public GameResult newAttemptForUser(final GamificationState state) {
+        long userId = ThreadLocalRandom.current().nextLong(1, state.users + 1);
+        ChallengeSolvedEvent event = new ChallengeSolvedEvent(state.nextAttemptId(),
+                true, 30, 40, userId, "user_" + userId);
+        return state.getBean(GameService.class).newAttemptForUser(event);
+    }
+}
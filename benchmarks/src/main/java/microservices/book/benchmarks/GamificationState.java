@@ -0,0 +1,48 @@
+package microservices.book.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Spring context shared by all the threads of a benchmark. The size of the
+ * seeded data can be changed from the command line, e.g.
+ * -p users=1000,100000 -p cards=10000,10000000
+ */
+@State(Scope.Benchmark)
+public class GamificationState {
+
+    @Param("1000")
+    public int users;
+
+    @Param("10000")
+    public long cards;
+
+    private ConfigurableApplicationContext context;
+    private AtomicLong attemptIds;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApplication.start(users, cards);
+        attemptIds = new AtomicLong(context.getBean(DataSeeder.class).nextAttemptId());
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(final Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public long nextAttemptId() {
+        return attemptIds.getAndIncrement();
+    }
+}
@@ -0,0 +1,36 @@
+package microservices.book.benchmarks;
+
+import microservices.book.gamification.game.LeaderBoardService;
+import microservices.book.gamification.game.domain.LeaderBoardRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading the leader board: the top positions, served from memory,
+ * and a page further down, which needs the database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LeaderBoardBenchmark {
+
+    @Benchmark
+    public List<LeaderBoardRow> getCurrentLeaderBoard(final GamificationState state) {
+        return state.getBean(LeaderBoardService.class).getCurrentLeaderBoard();
+    }
+
+    @Benchmark
+    public List<LeaderBoardRow> getLeaderBoardPage(final GamificationState state) {
+        return state.getBean(LeaderBoardService.class).getLeaderBoard(100, 20);
+    }
+}
@@ -0,0 +1,82 @@
+package microservices.book.multiplication.challenge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the modes of challenges.generator.mode when several request
+ * threads generate challenges at the same time: the shared Random, a Random
+ * per thread and the pool of challenges, with and without the alias of the
+ * user (out of 1000 users).
+ * Run it with more threads (-t) to see how the shared Random scales.
+ */
+/*
+ * It's in the package of the generators to use their package-private
+ * constructors, as the Spring context would.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ChallengeGeneratorBenchmark {
+
+    private static final String[] ALIASES = new String[1000];
+
+    static {
+        for (int i = 0; i < ALIASES.length; i++) {
+            ALIASES[i] = "user_" + i;
+        }
+    }
+
+    private ChallengeGeneratorService shared;
+    private ChallengeGeneratorService threadLocal;
+    private ChallengeGeneratorService pool;
+
+    @Setup
+    public void setUp() {
+        shared = new ChallengeGeneratorServiceImpl();
+        threadLocal = new ThreadLocalChallengeGeneratorService();
+        pool = new PooledChallengeGeneratorService(3, ALIASES.length, Duration.ofHours(1));
+    }
+
+    @Benchmark
+    public Challenge sharedRandom() {
+        return shared.randomChallenge();
+    }
+
+    @Benchmark
+    public Challenge threadLocalRandom() {
+        return threadLocal.randomChallenge();
+    }
+
+    @Benchmark
+    public Challenge pool() {
+        return pool.randomChallenge();
+    }
+
+    @Benchmark
+    public Challenge poolWithDifficulty() {
+        return pool.randomChallenge(2, null);
+    }
+
+    @Benchmark
+    public Challenge poolPerUser() {
+        return pool.randomChallenge(null, ALIASES[ThreadLocalRandom.current().nextInt(ALIASES.length)]);
+    }
+}
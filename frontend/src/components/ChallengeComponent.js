@@ -54,7 +54,7 @@ class ChallengeComponent extends React.Component {
     });
   }
   refreshChallenge() {
-    ChallengesApiClient.challenge().then((res) => {
+    ChallengesApiClient.challenge(this.state.user).then((res) => {
       if (res.ok) {
         res.json().then((json) => {
           this.setState({
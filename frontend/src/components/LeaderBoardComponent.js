@@ -12,9 +12,56 @@ class LeaderBoardComponent extends React.Component {
   }
 
   componentDidMount() {
+    // user id -> alias of the users already shown
+    this.aliases = new Map();
+    if (window.EventSource) {
+      this.subscribeLeaderBoard();
+    } else {
+      this.pollLeaderBoard();
+    }
+  }
+
+  componentWillUnmount() {
+    if (this.stream) {
+      this.stream.close();
+    }
+    clearInterval(this.timer);
+  }
+
+  pollLeaderBoard() {
     this.refreshLeaderBoard();
     // sets a timer to refresh the leaderboard every 5 seconds
-    setInterval(this.refreshLeaderBoard.bind(this), 5000);
+    this.timer = setInterval(this.refreshLeaderBoard.bind(this), 5000);
+  }
+
+  /*
+  The server sends the whole leaderboard when we subscribe ("leaders") and then
+  only the positions that change ("diff"), so we keep the last rows received to
+  apply the diffs to them. The browser reconnects by itself if the connection
+  drops, and we get the whole leaderboard again. If the stream can't be opened
+  at all, we go back to polling.
+  */
+  subscribeLeaderBoard() {
+    this.rows = [];
+    this.stream = GameApiClient.leaderBoardStream();
+    this.stream.addEventListener("leaders", (event) => {
+      this.rows = JSON.parse(event.data);
+      this.showLeaderBoard(this.rows);
+    });
+    this.stream.addEventListener("diff", (event) => {
+      const diff = JSON.parse(event.data);
+      const rows = this.rows.slice(0, diff.size);
+      diff.changes.forEach((change) => (rows[change.position] = change.row));
+      this.rows = rows;
+      this.showLeaderBoard(rows);
+    });
+    this.stream.onerror = () => {
+      if (this.stream.readyState === EventSource.CLOSED) {
+        console.log("Leaderboard stream closed, polling instead");
+        this.stream = null;
+        this.pollLeaderBoard();
+      }
+    };
   }
 
   getLeaderBoardData(): Promise {
@@ -28,7 +75,7 @@ class LeaderBoardComponent extends React.Component {
   }
 
   getUserAliasData(userIds: number[]): Promise {
-    return ChallengesApiClient.getUsers(userIds).then((usRes) => {
+    return ChallengesApiClient.getUserAliases(userIds).then((usRes) => {
       if (usRes.ok) {
         return usRes.json();
       } else {
@@ -56,32 +103,38 @@ the extra field.
 */
   refreshLeaderBoard() {
     this.getLeaderBoardData()
-      .then((lbData) => {
-        let userIds = lbData.map((row) => row.userId);
-        if (userIds.length > 0) {
-          this.getUserAliasData(userIds)
-            .then((data) => {
-              // build a map of id -> alias
-              let userMap = new Map();
-              data.forEach((idAlias) => {
-                userMap.set(idAlias.id, idAlias.alias);
-              });
-              // add a property to existing lb data
-              lbData.forEach((row) => (row["alias"] = userMap.get(row.userId)));
-              this.updateLeaderBoard(lbData);
-            })
-            .catch((reason) => {
-              console.log("Error mapping user ids", reason);
-              this.updateLeaderBoard(lbData);
-            });
-        }
-      })
+      .then((lbData) => this.showLeaderBoard(lbData))
       .catch((reason) => {
         this.setState({ serverError: true });
         console.log("Gamification server error", reason);
       });
   }
 
+  // Only the aliases of the users we haven't shown yet are requested
+  showLeaderBoard(rows) {
+    let missing = rows
+      .map((row) => row.userId)
+      .filter((userId) => !this.aliases.has(userId));
+    let withAliases = () =>
+      rows.map((row) => ({ ...row, alias: this.aliases.get(row.userId) }));
+    if (missing.length === 0) {
+      this.updateLeaderBoard(withAliases());
+      return;
+    }
+    this.getUserAliasData(missing)
+      .then((data) => {
+        // the keys of a JSON object are always strings
+        Object.entries(data).forEach(([id, alias]) =>
+          this.aliases.set(Number(id), alias)
+        );
+        this.updateLeaderBoard(withAliases());
+      })
+      .catch((reason) => {
+        console.log("Error mapping user ids", reason);
+        this.updateLeaderBoard(withAliases());
+      });
+  }
+
   render() {
     if (this.state.serverError) {
       return (
@@ -4,13 +4,18 @@ class ChallengesApiClient {
   static POST_RESULT = "/attempts";
   static GET_ATTEMPTS_BY_ALIAS = "/attempts?alias=";
   static GET_USERS_BY_IDS = "/users";
+  static POST_USER_ALIASES = "/users/batch";
 
-  static challenge(): Promise<Response> {
+  // with the alias of the user, they don't get the same challenges again
+  static challenge(userAlias?: string): Promise<Response> {
     return fetch(
-      ChallengesApiClient.SERVER_URL + ChallengesApiClient.GET_CHALLENGE
+      ChallengesApiClient.SERVER_URL +
+        ChallengesApiClient.GET_CHALLENGE +
+        (userAlias ? "?alias=" + encodeURIComponent(userAlias) : "")
     );
   }
 
+  // the Idempotency-Key lets the gateway retry the attempt without storing it twice
   static sendGuess(
     user: string,
     a: number,
@@ -23,6 +28,7 @@ class ChallengesApiClient {
         method: "POST",
         headers: {
           "Content-Type": "application/json",
+          "Idempotency-Key": crypto.randomUUID(),
         },
         body: JSON.stringify({
           userAlias: user,
@@ -50,5 +56,18 @@ class ChallengesApiClient {
         userIds.join(",")
     );
   }
+  // retrieve the aliases of the users as an {id: alias} object
+  static getUserAliases(userIds: number[]): Promise<Response> {
+    return fetch(
+      ChallengesApiClient.SERVER_URL + ChallengesApiClient.POST_USER_ALIASES,
+      {
+        method: "POST",
+        headers: {
+          "Content-Type": "application/json",
+        },
+        body: JSON.stringify(userIds),
+      }
+    );
+  }
 }
 export default ChallengesApiClient;
@@ -1,8 +1,13 @@
 class GameApiClient {
   static SERVER_URL = 'http://localhost:8000';
   static GET_LEADERBOARD = "/leaders";
+  static LEADERBOARD_STREAM = "/leaders/stream";
   static leaderBoard(): Promise<Response> {
     return fetch(GameApiClient.SERVER_URL + GameApiClient.GET_LEADERBOARD);
   }
+
+  static leaderBoardStream(): EventSource {
+    return new EventSource(GameApiClient.SERVER_URL + GameApiClient.LEADERBOARD_STREAM);
+  }
 }
 export default GameApiClient;
@@ -0,0 +1,14 @@
+-- Removes the score cards stored more than once for the same attempt, so the
+-- schema update can add the uk_score_card_attempt constraint on the next start.
+-- Run it with the service stopped. The oldest card of every attempt is kept.
+DELETE FROM score_card s
+WHERE EXISTS (SELECT 1 FROM score_card o
+              WHERE o.attempt_id = s.attempt_id AND o.card_id < s.card_id);
+
+-- The user score aggregates counted the duplicates too, they're calculated
+-- again from the remaining cards. The streaks are kept as they are.
+UPDATE user_score u
+SET total_score = (SELECT SUM(s.score) FROM score_card s WHERE s.user_id = u.user_id),
+    card_count = (SELECT COUNT(*) FROM score_card s WHERE s.user_id = u.user_id),
+    last_score_timestamp = (SELECT MAX(s.score_timestamp) FROM score_card s WHERE s.user_id = u.user_id)
+WHERE EXISTS (SELECT 1 FROM score_card s WHERE s.user_id = u.user_id);
@@ -0,0 +1,115 @@
+package microservices.book.gamification.challenge;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the {@link ChallengeSolvedEvent}s that Multiplication publishes in
+ * its compact binary format, the messages with the {@link #CONTENT_TYPE}.
+ * The rest of the messages are left to the JSON converter.
+ */
+/*
+ * The layout is fixed, and it must be the same as the one in Multiplication:
+ * version (1 byte), attemptId (8), correct (1), factorA (4), factorB (4),
+ * userId (8), length of the userAlias in UTF-8 (2, -1 if null) and the
+ * userAlias. All the numbers are big-endian.
+ * The content type must match exactly: a message without content type is
+ * not taken as binary.
+ */
+public class ChallengeSolvedEventBinaryConverter extends AbstractMessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-challenge-solved-event";
+    static final byte VERSION = 1;
+    private static final int FIXED_LENGTH = 1 + 8 + 1 + 4 + 4 + 8 + 2;
+
+    public ChallengeSolvedEventBinaryConverter() {
+        super(MimeType.valueOf(CONTENT_TYPE));
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(final Class<?> clazz) {
+        return ChallengeSolvedEvent.class.equals(clazz);
+    }
+
+    @Override
+    protected Object convertFromInternal(final Message<?> message, final Class<?> targetClass,
+                                         final Object conversionHint) {
+        if (!(message.getPayload() instanceof byte[] body)) {
+            return null;
+        }
+        try {
+            return decode(body);
+        } catch (final IOException e) {
+            throw new MessageConversionException(message, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object convertToInternal(final Object payload, final MessageHeaders headers,
+                                       final Object conversionHint) {
+        return encode((ChallengeSolvedEvent) payload);
+    }
+
+    /**
+     * @param event the event
+     * @return the event in the binary format
+     */
+    public static byte[] encode(final ChallengeSolvedEvent event) {
+        byte[] alias = event.getUserAlias() != null ?
+                event.getUserAlias().getBytes(StandardCharsets.UTF_8) : null;
+        if (alias != null && alias.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("User alias too long: " + alias.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_LENGTH + (alias != null ? alias.length : 0))
+                .put(VERSION)
+                .putLong(event.getAttemptId())
+                .put((byte) (event.isCorrect() ? 1 : 0))
+                .putInt(event.getFactorA())
+                .putInt(event.getFactorB())
+                .putLong(event.getUserId())
+                .putShort((short) (alias != null ? alias.length : -1));
+        if (alias != null) {
+            buffer.put(alias);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param body the event in the binary format
+     * @return the event
+     * @throws IOException if the body is not a valid event
+     */
+    public static ChallengeSolvedEvent decode(final byte[] body) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unknown version of ChallengeSolvedEvent: " + version);
+            }
+            long attemptId = buffer.getLong();
+            boolean correct = buffer.get() != 0;
+            int factorA = buffer.getInt();
+            int factorB = buffer.getInt();
+            long userId = buffer.getLong();
+            short aliasLength = buffer.getShort();
+            String alias = null;
+            if (aliasLength >= 0) {
+                byte[] aliasBytes = new byte[aliasLength];
+                buffer.get(aliasBytes);
+                alias = new String(aliasBytes, StandardCharsets.UTF_8);
+            }
+            return new ChallengeSolvedEvent(attemptId, correct, factorA, factorB, userId, alias);
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("Truncated ChallengeSolvedEvent of " + body.length + " bytes", e);
+        }
+    }
+}
@@ -2,16 +2,24 @@ package microservices.book.gamification.configuration;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import microservices.book.gamification.challenge.ChallengeSolvedEventBinaryConverter;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.CompositeMessageConverter;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
 import org.springframework.messaging.handler.annotation.support.MessageHandlerMethodFactory;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Configures RabbitMQ via AMQP abstraction to use events in our
@@ -80,23 +88,60 @@ public class AMQPConfiguration {
      * declare the
      * queue
      */
-    // configure queue to have a custom TTL of six hours and a max length of 25000
+    /*
+     * There is a queue per partition of the attempts (see AttemptPartitions),
+     * and every instance declares all of them, so the events of a partition
+     * are kept even if the instance that consumes it is down.
+     * The queues have a single active consumer: if two instances consume the
+     * same partition by mistake, or during a deployment, the broker only
+     * delivers its events to one of them, so they're never processed out of
+     * order, and the other one takes over if the first one goes away.
+     */
+    /*
+     * Moving from the single gamification.queue, bound to attempt.correct, to
+     * the partitions needs amqp.attempts.legacy-queue=true during the rollout,
+     * so no event is dropped:
+     * 1. Deploy Gamification first. It declares the partition queues, so the
+     *    events of the new Multiplication have somewhere to go, and it keeps
+     *    the old queue, its binding and a consumer on it.
+     * 2. Deploy Multiplication. The old instances still running publish to
+     *    attempt.correct, which keeps landing in the old queue.
+     * 3. Once no old Multiplication is left and the old queue is empty, set
+     *    amqp.attempts.legacy-queue=false and delete the queue in the broker.
+     * The old queue is declared with the same arguments as before, otherwise
+     * the broker would reject the declaration. It has no single active
+     * consumer, so during the rollout the events of a user may be processed
+     * by different instances.
+     */
+    // configure queue to have a custom TTL of six hours and a max length of 2500
     // messages
     @Bean
-    public Queue gamificationQueue(
-            @Value("${amqp.queue.gamification}") final String queueName) {
-        return QueueBuilder.durable(queueName).ttl((int) Duration.ofHours(6).toMillis())
-                .maxLength(2500)
-                .build();
-    }
-
-    @Bean
-    public Binding correctAttemptsBinding(final Queue gamificationQueue,
+    public Declarables gamificationQueues(final AttemptPartitions attemptPartitions,
             final TopicExchange attemptsExchange) {
-        // this routing key is used as a filter to receive only correct attempts
-        return BindingBuilder.bind(gamificationQueue)
-                .to(attemptsExchange)
-                .with("attempt.correct");
+        List<Declarable> declarables = new ArrayList<>();
+        for (int partition = 0; partition < attemptPartitions.getPartitions(); partition++) {
+            Queue queue = QueueBuilder.durable(attemptPartitions.queueName(partition))
+                    .ttl((int) Duration.ofHours(6).toMillis())
+                    .maxLength(2500)
+                    .singleActiveConsumer()
+                    .build();
+            declarables.add(queue);
+            // The wrong attempts are needed too, they break the streaks of the users
+            declarables.add(BindingBuilder.bind(queue)
+                    .to(attemptsExchange)
+                    .with(attemptPartitions.bindingKey(partition)));
+        }
+        if (attemptPartitions.isLegacyQueue()) {
+            Queue legacy = QueueBuilder.durable(attemptPartitions.getLegacyQueueName())
+                    .ttl((int) Duration.ofHours(6).toMillis())
+                    .maxLength(2500)
+                    .build();
+            declarables.add(legacy);
+            declarables.add(BindingBuilder.bind(legacy)
+                    .to(attemptsExchange)
+                    .with(attemptPartitions.getLegacyRoutingKey()));
+        }
+        return new Declarables(declarables);
     }
 
     /*
@@ -124,7 +169,9 @@ public class AMQPConfiguration {
         jsonConverter.getObjectMapper().registerModule(
                 new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
 
-        factory.setMessageConverter(jsonConverter);
+        // The events in the binary format are recognized by their content type
+        factory.setMessageConverter(new CompositeMessageConverter(List.of(
+                new ChallengeSolvedEventBinaryConverter(), jsonConverter)));
         return factory;
     }
 
@@ -151,4 +198,61 @@ public class AMQPConfiguration {
             final MessageHandlerMethodFactory messageHandlerMethodFactory) {
         return c -> c.setMessageHandlerMethodFactory(messageHandlerMethodFactory);
     }
+
+    /*
+     * In single mode, the listener returns a future that completes when the
+     * event is processed by its worker, and the container acknowledges the
+     * message then. That needs the MANUAL acknowledge mode, which here only
+     * means that the container doesn't acknowledge the message as soon as the
+     * listener returns.
+     * The consumer receives up to amqp.listener.prefetch messages without
+     * acknowledging them, which is how many events can be waiting for the
+     * workers. There is always a single consumer per queue: with more, two
+     * events of the same user could reach the workers out of order. The
+     * parallelism comes from amqp.listener.workers instead.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "amqp.listener.mode", havingValue = "single", matchIfMissing = true)
+    public SimpleRabbitListenerContainerFactory partitionedListenerContainerFactory(
+            final SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            final ConnectionFactory connectionFactory,
+            @Value("${amqp.listener.prefetch:250}") final int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(prefetch);
+        return factory;
+    }
+
+    /*
+     * In batch mode, the container keeps receiving messages until it has
+     * amqp.listener.batch.size of them or no new message arrives within
+     * amqp.listener.batch.receive-timeout, and then it passes them all
+     * together to the listener. The rest of the settings come from the
+     * spring.rabbitmq.listener.simple properties, like for the default
+     * factory. The prefetch count is at least the batch size, otherwise the
+     * batches couldn't fill up, and there is a single consumer for the same
+     * reason as in single mode.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "amqp.listener.mode", havingValue = "batch")
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            final SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            final ConnectionFactory connectionFactory,
+            @Value("${amqp.listener.prefetch:250}") final int prefetch,
+            @Value("${amqp.listener.batch.size:100}") final int batchSize,
+            @Value("${amqp.listener.batch.receive-timeout:200ms}") final Duration receiveTimeout) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeout.toMillis());
+        return factory;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package microservices.book.gamification.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The partitions of the attempt events. Multiplication publishes the events
+ * of every user with the routing key attempt.correct.<n> or attempt.wrong.<n>,
+ * where n is the partition of the user out of amqp.attempts.partitions. There is one queue
+ * per partition, and every instance of Gamification consumes the queues of
+ * the partitions in amqp.attempts.owned-partitions (all of them if empty).
+ * While amqp.attempts.legacy-queue is enabled, the instances also consume the
+ * single queue used before the partitions, see AMQPConfiguration.
+ */
+@Component
+public class AttemptPartitions {
+
+    private final String queueName;
+    private final int partitions;
+    private final int[] owned;
+    private final boolean legacyQueue;
+
+    public AttemptPartitions(@Value("${amqp.queue.gamification}") final String queueName,
+                             @Value("${amqp.attempts.partitions:1}") final int partitions,
+                             @Value("${amqp.attempts.owned-partitions:}") final String owned,
+                             @Value("${amqp.attempts.legacy-queue:false}") final boolean legacyQueue) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("amqp.attempts.partitions must be at least 1");
+        }
+        this.queueName = queueName;
+        this.partitions = partitions;
+        this.legacyQueue = legacyQueue;
+        this.owned = owned.isBlank() ? IntStream.range(0, partitions).toArray() :
+                Arrays.stream(owned.split(","))
+                        .map(String::trim)
+                        .mapToInt(Integer::parseInt)
+                        .distinct()
+                        .toArray();
+        if (Arrays.stream(this.owned).anyMatch(p -> p < 0 || p >= partitions)) {
+            throw new IllegalArgumentException("amqp.attempts.owned-partitions must be " +
+                    "between 0 and " + (partitions - 1) + ": " + owned);
+        }
+    }
+
+    /**
+     * @return the number of partitions
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @param partition the partition
+     * @return the name of the queue of the partition
+     */
+    public String queueName(final int partition) {
+        return queueName + "." + partition;
+    }
+
+    /**
+     * @param partition the partition
+     * @return the binding key of the attempts of the partition, both the
+     *         correct and the wrong ones
+     */
+    public String bindingKey(final int partition) {
+        return "attempt.*." + partition;
+    }
+
+    /**
+     * @return true if the queue used before the partitions is still consumed
+     */
+    public boolean isLegacyQueue() {
+        return legacyQueue;
+    }
+
+    /**
+     * @return the name of the queue used before the partitions
+     */
+    public String getLegacyQueueName() {
+        return queueName;
+    }
+
+    /**
+     * @return the routing key of the events sent to the queue used before the
+     *         partitions, by the versions of Multiplication without them
+     */
+    public String getLegacyRoutingKey() {
+        return "attempt.correct";
+    }
+
+    /**
+     * @return the names of the queues that this instance consumes
+     */
+    public String[] getOwnedQueues() {
+        Stream<String> queues = Arrays.stream(owned).mapToObj(this::queueName);
+        return (legacyQueue ? Stream.concat(queues, Stream.of(queueName)) : queues)
+                .toArray(String[]::new);
+    }
+}
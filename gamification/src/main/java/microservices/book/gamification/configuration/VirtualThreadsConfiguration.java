@@ -0,0 +1,28 @@
+package microservices.book.gamification.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Refuses to start with spring.threads.virtual.enabled=true on a JVM older
+ * than Java 21, where Spring Boot would ignore the property and keep the
+ * platform threads without saying so.
+ * Only the threads managed by Spring Boot become virtual (Tomcat, the
+ * RabbitMQ listeners and the scheduled tasks). The game workers of the
+ * UserPartitionedExecutor are always platform threads: there are only
+ * amqp.listener.workers of them, each one processing its users in order.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+
+    static final int MINIMUM_JAVA_VERSION = 21;
+
+    public VirtualThreadsConfiguration() {
+        int javaVersion = Runtime.version().feature();
+        if (javaVersion < MINIMUM_JAVA_VERSION) {
+            throw new IllegalStateException("spring.threads.virtual.enabled needs Java " +
+                    MINIMUM_JAVA_VERSION + " or newer, but this JVM is Java " + javaVersion);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package microservices.book.gamification.game;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import microservices.book.gamification.game.domain.BadgeCard;
+import microservices.book.gamification.game.domain.BadgeType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.stream.Collectors;
+
+/**
+ * Caches the badges that every user owns as a bitset (see BadgeType#mask), so
+ * most attempts don't need to query the badges of the user to know which
+ * badges they can still win.
+ * The number of users kept is bounded by game.badge-cache.size, and the hits
+ * and misses are published as the cache.gets metric with cache=badge-ownership.
+ */
+/*
+ * Badges are never revoked, so an entry only changes when the user wins a new
+ * badge. The entries are loaded lazily from the database, and the new badges
+ * are added to them when the transaction that stores them commits.
+ * They're added right before the commit and not after it because the lock on
+ * the UserScore row is released with the commit: if we waited, a concurrent
+ * attempt of the same user could read the old bitset in between and give the
+ * same badge twice. If the commit fails after that, the entry is discarded so
+ * it's loaded again from the database.
+ */
+@Component
+class BadgeOwnershipCache {
+
+    private final BadgeRepository badgeRepository;
+    private final Cache<Long, Long> cache;
+
+    BadgeOwnershipCache(final BadgeRepository badgeRepository,
+                        final MeterRegistry meterRegistry,
+                        @Value("${game.badge-cache.size:10000}") final long size) {
+        this.badgeRepository = badgeRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(size)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "badge-ownership");
+    }
+
+    /**
+     * @param userId the id of the user
+     * @return the bitset of the badges that the user owns
+     */
+    public long badgeMaskOf(final Long userId) {
+        return cache.get(userId, this::loadBadgeMask);
+    }
+
+    /**
+     * Adds the new badges of the user to the cache once the current
+     * transaction is about to commit, or straight away if there is no
+     * transaction.
+     *
+     * @param userId    the id of the user
+     * @param badgeMask the bitset of the new badges
+     */
+    public void badgesWon(final Long userId, final long badgeMask) {
+        if (badgeMask == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addBadges(userId, badgeMask);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void beforeCommit(final boolean readOnly) {
+                        addBadges(userId, badgeMask);
+                    }
+
+                    @Override
+                    public void afterCompletion(final int status) {
+                        if (status != STATUS_COMMITTED) {
+                            cache.invalidate(userId);
+                        }
+                    }
+                });
+    }
+
+    // Users that are not cached will get all their badges when they're loaded
+    private void addBadges(final Long userId, final long badgeMask) {
+        cache.asMap().computeIfPresent(userId, (id, mask) -> mask | badgeMask);
+    }
+
+    private long loadBadgeMask(final Long userId) {
+        return BadgeType.maskOf(badgeRepository
+                .findByUserIdOrderByBadgeTimestampDesc(userId)
+                .stream()
+                .map(BadgeCard::getBadgeType)
+                .collect(Collectors.toList()));
+    }
+}
@@ -3,7 +3,10 @@ package microservices.book.gamification.game;
 import microservices.book.gamification.game.domain.BadgeCard;
 import org.springframework.data.repository.CrudRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public interface BadgeRepository extends CrudRepository<BadgeCard, Long> {
     /**
@@ -13,4 +16,28 @@ public interface BadgeRepository extends CrudRepository<BadgeCard, Long> {
      * @return the list of BadgeCards, sorted by most recent.
      */
     List<BadgeCard> findByUserIdOrderByBadgeTimestampDesc(final Long userId);
+
+    /**
+     * Retrieves all BadgeCards for the given users in a single query, ordered
+     * by date with most recent ones on top.
+     *
+     * @param userIds the ids of the users to look for BadgeCards
+     * @return the list of BadgeCards, sorted by most recent.
+     */
+    List<BadgeCard> findByUserIdInOrderByBadgeTimestampDesc(final Collection<Long> userIds);
+
+    /**
+     * Retrieves the badges of the given users in a single query.
+     *
+     * @param userIds the ids of the users to look for BadgeCards
+     * @return the BadgeCards of every user, sorted by most recent. Users without
+     * badges are not included.
+     */
+    default Map<Long, List<BadgeCard>> findByUserIdsGroupedByUser(final Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        return findByUserIdInOrderByBadgeTimestampDesc(userIds).stream()
+                .collect(Collectors.groupingBy(BadgeCard::getUserId));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package microservices.book.gamification.game;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import microservices.book.gamification.challenge.ChallengeSolvedEvent;
+import microservices.book.gamification.challenge.ChallengeSolvedEventBinaryConverter;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Processes the events in batches, so a backed-up queue is drained with one
+ * transaction per batch instead of one per event.
+ * It's enabled with amqp.listener.mode=batch. The size of the batches and how
+ * long to wait for them to fill up are configured in the
+ * batchListenerContainerFactory.
+ * The events of a batch are split per worker of the {@link UserPartitionedExecutor},
+ * and the parts are processed in parallel, each one in its own transaction.
+ */
+/*
+ * The listener receives the raw AMQP messages instead of the converted events.
+ * If the conversion was done by the container, a single malformed message would
+ * make the whole batch fail, so we deserialize them here one by one and only
+ * discard the ones that can't be read.
+ * The whole batch is acknowledged when this method returns, so any error is
+ * handled here per message: if the batch transaction fails, it's rolled back
+ * and the events are processed again one at a time, discarding only the ones
+ * that fail on their own (like the single-event listener does). That's also
+ * how an attempt that was already scored in a previous batch ends up
+ * skipped, when the unique attemptId of its ScoreCard fails the batch.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "amqp.listener.mode", havingValue = "batch")
+public class GameBatchEventHandler {
+
+    private final GameService gameService;
+    private final ObjectMapper objectMapper;
+    private final UserPartitionedExecutor executor;
+
+    @RabbitListener(queues = "#{@attemptPartitions.ownedQueues}",
+            containerFactory = "batchListenerContainerFactory")
+    void handleMultiplicationSolvedBatch(final List<Message> messages) {
+        List<ChallengeSolvedEvent> events = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            try {
+                events.add(readEvent(message));
+            } catch (final IOException e) {
+                log.error("Discarding ChallengeSolvedEvent that can't be read: {}",
+                        message.getMessageProperties().getMessageId(), e);
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        log.info("Batch of {} Challenge Solved Events received", events.size());
+        Map<Integer, List<ChallengeSolvedEvent>> byWorker = events.stream()
+                .collect(Collectors.groupingBy(e -> executor.partitionOf(e.getUserId()),
+                        LinkedHashMap::new, Collectors.toList()));
+        // The batch is acknowledged when this returns, so we wait for all the parts
+        CompletableFuture.allOf(byWorker.values().stream()
+                .map(part -> executor.submit(part.get(0).getUserId(), () -> {
+                    processBatch(part);
+                    return null;
+                }))
+                .toArray(CompletableFuture[]::new)).join();
+    }
+
+    // Same formats as the single-event listener: binary or JSON
+    private ChallengeSolvedEvent readEvent(final Message message) throws IOException {
+        if (ChallengeSolvedEventBinaryConverter.CONTENT_TYPE.equals(
+                message.getMessageProperties().getContentType())) {
+            return ChallengeSolvedEventBinaryConverter.decode(message.getBody());
+        }
+        return objectMapper.readValue(message.getBody(), ChallengeSolvedEvent.class);
+    }
+
+    private void processBatch(final List<ChallengeSolvedEvent> events) {
+        try {
+            gameService.newAttempts(events);
+        } catch (final Exception e) {
+            log.warn("Error when processing a batch of {} events, " +
+                    "processing them one by one", events.size(), e);
+            events.forEach(this::processOne);
+        }
+    }
+
+    private void processOne(final ChallengeSolvedEvent event) {
+        try {
+            gameService.newAttemptForUser(event);
+        } catch (final DataIntegrityViolationException e) {
+            if (ProcessedAttempts.isDuplicate(e)) {
+                log.info("Attempt id {} was already processed, skipping it",
+                        event.getAttemptId());
+            } else {
+                log.error("Error when trying to process ChallengeSolvedEvent {}",
+                        event.getAttemptId(), e);
+            }
+        } catch (final Exception e) {
+            // Same as the single-event listener: the event is not re-queued
+            log.error("Error when trying to process ChallengeSolvedEvent {}",
+                    event.getAttemptId(), e);
+        }
+    }
+}
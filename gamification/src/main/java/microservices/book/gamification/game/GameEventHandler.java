@@ -2,18 +2,32 @@ package microservices.book.gamification.game;
 
 import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import microservices.book.gamification.challenge.ChallengeSolvedEvent;
 
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Processes the events one by one. This is the default listener mode, see
+ * {@link GameBatchEventHandler} for the batch one.
+ * The events are handed over to the {@link UserPartitionedExecutor}, so
+ * different users are processed in parallel but the events of the same user
+ * are still processed in order. Every event is acknowledged once it's
+ * processed, see the partitionedListenerContainerFactory.
+ */
 @RequiredArgsConstructor
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "amqp.listener.mode", havingValue = "single", matchIfMissing = true)
 public class GameEventHandler {
 
     private final GameService gameService;
+    private final UserPartitionedExecutor executor;
 
     /*
      * you’ll use the @RabbitListener annotation for this. You can add this
@@ -30,9 +44,17 @@ public class GameEventHandler {
      * consumer.html if you’re
      * curious).
      */
-    @RabbitListener(queues = "${amqp.queue.gamification}")
-    void handleMultiplicationSolved(final ChallengeSolvedEvent event) {
+    @RabbitListener(queues = "#{@attemptPartitions.ownedQueues}",
+            containerFactory = "partitionedListenerContainerFactory")
+    CompletableFuture<Void> handleMultiplicationSolved(final ChallengeSolvedEvent event) {
         log.info("Challenge Solved Event received: {}", event.getAttemptId());
+        return executor.submit(event.getUserId(), () -> {
+            process(event);
+            return null;
+        });
+    }
+
+    private void process(final ChallengeSolvedEvent event) {
         /*
          * By default, the logic that Spring builds based on the RabbitListener
          * annotations will
@@ -52,6 +74,14 @@ public class GameEventHandler {
          */
         try {
             gameService.newAttemptForUser(event);
+        } catch (final DataIntegrityViolationException e) {
+            if (!ProcessedAttempts.isDuplicate(e)) {
+                log.error("Error when trying to process ChallengeSolvedEvent", e);
+                throw new AmqpRejectAndDontRequeueException(e);
+            }
+            // Already scored before, the event is acknowledged and dropped
+            log.info("Attempt id {} was already processed, skipping it",
+                    event.getAttemptId());
         } catch (final Exception e) {
             /*
              * The error strategy here is to use the default value AUTO but catch any
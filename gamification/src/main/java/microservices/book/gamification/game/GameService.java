@@ -17,6 +17,15 @@ public interface GameService {
      */
     GameResult newAttemptForUser(ChallengeSolvedEvent challenge);
 
+    /**
+     * Process a batch of attempts, possibly from different users, in a
+     * single transaction.
+     *
+     * @param challenges the challenges in the order they were received
+     * @return the {@link GameResult} of every challenge, in the same order
+     */
+    List<GameResult> newAttempts(List<ChallengeSolvedEvent> challenges);
+
     @Value
     class GameResult {
         int score;
@@ -7,10 +7,18 @@ import microservices.book.gamification.game.badgeprocessors.BadgeProcessor;
 import microservices.book.gamification.game.domain.BadgeCard;
 import microservices.book.gamification.game.domain.BadgeType;
 import microservices.book.gamification.game.domain.ScoreCard;
+import microservices.book.gamification.game.domain.UserScore;
+import microservices.book.gamification.game.domain.UserStats;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -21,6 +29,10 @@ import java.util.stream.Collectors;
 public class GameServiceImpl implements GameService {
         private final ScoreRepository scoreRepository;
         private final BadgeRepository badgeRepository;
+        private final UserScoreRepository userScoreRepository;
+        private final InMemoryLeaderBoard leaderBoard;
+        private final BadgeOwnershipCache badgeOwnershipCache;
+        private final ProcessedAttempts processedAttempts;
         /*
         Since you use constructor injection in GameServiceImpl with a list of 
 BadgeProcessor objects, Spring will find all the beans that implement this interface and 
@@ -44,8 +56,21 @@ annotate them with @Component so they are loaded in the Spring context.
          * method so you can test it.
          * 
          */
+        /*
+         * The ScoreCard, the UserScore aggregate and the new badges are stored in
+         * the same transaction, so the aggregate never drifts from the cards.
+         * An attempt that was processed recently is skipped. If it's older, the
+         * unique attemptId of the ScoreCard makes the transaction fail instead.
+         */
+        @Transactional
         @Override
         public GameResult newAttemptForUser(ChallengeSolvedEvent challenge) {
+                if (processedAttempts.contains(challenge.getAttemptId())) {
+                        log.info("Attempt id {} was already processed, skipping it",
+                                        challenge.getAttemptId());
+                        return new GameResult(0, List.of());
+                }
+                afterCommit(() -> processedAttempts.add(challenge.getAttemptId()));
                 /*
                  * You could remove the check for the correct attempt, but then you would depend
                  * too much on proper routing on the Multiplication microservice. If you keep
@@ -61,54 +86,175 @@ annotate them with @Component so they are loaded in the Spring context.
                         ScoreCard scoreCard = new ScoreCard(challenge.getUserId(),
                                         challenge.getAttemptId());
                         scoreRepository.save(scoreCard);
+                        UserScore userScore = lockUserScore(challenge.getUserId());
+                        addToUserScore(userScore, scoreCard);
+                        userScore = userScoreRepository.save(userScore);
                         log.info("User {} scored {} points for attempt id {}",
                                         challenge.getUserAlias(), scoreCard.getScore(),
                                         challenge.getAttemptId());
-                        List<BadgeCard> badgeCards = processForBadges(challenge);
-                        return new GameResult(scoreCard.getScore(),
-                                        badgeCards.stream().map(BadgeCard::getBadgeType)
-                                                        .collect(Collectors.toList()));
+                        List<BadgeCard> newBadgeCards = processForBadges(challenge,
+                                        userScore.toStats(badgeOwnershipCache.badgeMaskOf(
+                                                        challenge.getUserId())));
+                        badgeRepository.saveAll(newBadgeCards);
+                        List<BadgeType> badges = newBadgeCards
+                                        .stream().map(BadgeCard::getBadgeType)
+                                        .collect(Collectors.toList());
+                        badgeOwnershipCache.badgesWon(challenge.getUserId(),
+                                        BadgeType.maskOf(badges));
+                        // Keeps the in-memory leader board up to date, once it's stored
+                        long totalScore = userScore.getTotalScore();
+                        afterCommit(() -> leaderBoard.userScored(challenge.getUserId(),
+                                        totalScore, badges));
+                        return new GameResult(scoreCard.getScore(), badges);
                 } else {
                         log.info("Attempt id {} is not correct. " +
                                         "User {} does not get score.",
                                         challenge.getAttemptId(),
                                         challenge.getUserAlias());
+                        // Wrong attempts don't score, but they break the streak
+                        userScoreRepository.findByUserId(challenge.getUserId())
+                                        .filter(userScore -> userScore.getCurrentStreak() > 0)
+                                        .ifPresent(userScore -> {
+                                                userScore.setCurrentStreak(0);
+                                                userScoreRepository.save(userScore);
+                                        });
                         return new GameResult(0, List.of());
                 }
         }
 
+        /*
+         * The events are grouped per user, so the aggregate and the badges of
+         * each user are read (and locked) only once, no matter how
+         * many attempts they have in the batch. Then the attempts are replayed in
+         * order in memory, exactly as if they came one by one, and all the new
+         * rows are stored at the end with saveAll.
+         * The attempts that were processed recently, or that are repeated in
+         * the batch, are skipped.
+         */
+        @Transactional
+        @Override
+        public List<GameResult> newAttempts(final List<ChallengeSolvedEvent> challenges) {
+                GameResult[] results = new GameResult[challenges.size()];
+                Map<Long, List<Integer>> byUser = new LinkedHashMap<>();
+                Set<Long> attemptIds = new HashSet<>();
+                for (int i = 0; i < challenges.size(); i++) {
+                        ChallengeSolvedEvent challenge = challenges.get(i);
+                        if (processedAttempts.contains(challenge.getAttemptId())
+                                        || !attemptIds.add(challenge.getAttemptId())) {
+                                log.info("Attempt id {} was already processed, skipping it",
+                                                challenge.getAttemptId());
+                                results[i] = new GameResult(0, List.of());
+                                continue;
+                        }
+                        byUser.computeIfAbsent(challenge.getUserId(),
+                                        userId -> new ArrayList<>()).add(i);
+                }
+                afterCommit(() -> attemptIds.forEach(processedAttempts::add));
+                List<ScoreCard> newScoreCards = new ArrayList<>();
+                List<UserScore> userScores = new ArrayList<>();
+                List<BadgeCard> newBadgeCards = new ArrayList<>();
+                byUser.forEach((userId, indexes) -> {
+                        UserScore userScore = lockUserScore(userId);
+                        long previousBadgeMask = badgeOwnershipCache.badgeMaskOf(userId);
+                        long badgeMask = previousBadgeMask;
+                        List<BadgeType> userNewBadges = new ArrayList<>();
+                        for (int i : indexes) {
+                                ChallengeSolvedEvent challenge = challenges.get(i);
+                                if (!challenge.isCorrect()) {
+                                        userScore.setCurrentStreak(0);
+                                        results[i] = new GameResult(0, List.of());
+                                        continue;
+                                }
+                                ScoreCard scoreCard = new ScoreCard(userId, challenge.getAttemptId());
+                                newScoreCards.add(scoreCard);
+                                addToUserScore(userScore, scoreCard);
+                                List<BadgeCard> badgeCards = processForBadges(challenge,
+                                                userScore.toStats(badgeMask));
+                                newBadgeCards.addAll(badgeCards);
+                                List<BadgeType> badges = badgeCards.stream()
+                                                .map(BadgeCard::getBadgeType)
+                                                .collect(Collectors.toList());
+                                badgeMask |= BadgeType.maskOf(badges);
+                                // the latest badges go first, as in the leader board
+                                userNewBadges.addAll(0, badges);
+                                results[i] = new GameResult(scoreCard.getScore(), badges);
+                        }
+                        badgeOwnershipCache.badgesWon(userId, badgeMask & ~previousBadgeMask);
+                        // users with only wrong attempts and no previous cards are not stored
+                        if (userScore.getCardCount() > 0) {
+                                userScores.add(userScore);
+                                long totalScore = userScore.getTotalScore();
+                                afterCommit(() -> leaderBoard.userScored(userId, totalScore,
+                                                userNewBadges));
+                        }
+                });
+                scoreRepository.saveAll(newScoreCards);
+                userScoreRepository.saveAll(userScores);
+                badgeRepository.saveAll(newBadgeCards);
+                log.info("Processed {} attempts of {} users, {} new badges",
+                                challenges.size(), byUser.size(), newBadgeCards.size());
+                return List.of(results);
+        }
+
         /**
-         * Checks the total score and the different score cards obtained
-         * to give new badges in case their conditions are met.
+         * Retrieves the running aggregate of the user, or a new one if this is
+         * their first card. The row stays locked until the transaction ends, so
+         * concurrent updates for the same user are applied one by one.
          */
-        private List<BadgeCard> processForBadges(
-                        final ChallengeSolvedEvent solvedChallenge) {
-                Optional<Integer> optTotalScore = scoreRepository.getTotalScoreForUser(solvedChallenge.getUserId());
-                if (optTotalScore.isEmpty())
-                        return Collections.emptyList();
-                int totalScore = optTotalScore.get();
+        private UserScore lockUserScore(final Long userId) {
+                return userScoreRepository.findByUserId(userId)
+                                .orElseGet(() -> new UserScore(userId));
+        }
 
-                // Gets the total score and existing badges for that user
-                List<ScoreCard> scoreCardList = scoreRepository
-                                .findByUserIdOrderByScoreTimestampDesc(solvedChallenge.getUserId());
-                Set<BadgeType> alreadyGotBadges = badgeRepository
-                                .findByUserIdOrderByBadgeTimestampDesc(solvedChallenge.getUserId())
-                                .stream()
-                                .map(BadgeCard::getBadgeType)
-                                .collect(Collectors.toSet());
+        /**
+         * Adds the score card to the running aggregate of the user, which also
+         * extends their streak of correct attempts.
+         */
+        private static void addToUserScore(final UserScore userScore,
+                        final ScoreCard scoreCard) {
+                userScore.setTotalScore(userScore.getTotalScore() + scoreCard.getScore());
+                userScore.setCardCount(userScore.getCardCount() + 1);
+                userScore.setLastScoreTimestamp(Math.max(userScore.getLastScoreTimestamp(),
+                                scoreCard.getScoreTimestamp()));
+                userScore.setCurrentStreak(userScore.getCurrentStreak() + 1);
+                userScore.setLongestStreak(Math.max(userScore.getLongestStreak(),
+                                userScore.getCurrentStreak()));
+        }
 
+        /**
+         * Checks the statistics of the user to give new badges in case their
+         * conditions are met. The statistics are updated incrementally, so this
+         * doesn't depend on how many attempts the user has.
+         */
+        private List<BadgeCard> processForBadges(
+                        final ChallengeSolvedEvent solvedChallenge,
+                        final UserStats stats) {
                 // Calls the badge processors for badges that the user doesn't have yet
-                List<BadgeCard> newBadgeCards = badgeProcessors
+                return badgeProcessors
                                 .stream()
-                                .filter(bp -> !alreadyGotBadges.contains(bp.badgeType()))
-                                .map(bp -> bp.processForOptionalBadge(totalScore, scoreCardList, solvedChallenge))
+                                .filter(bp -> !stats.hasBadge(bp.badgeType()))
+                                .map(bp -> bp.processForOptionalBadge(stats, solvedChallenge))
                                 .flatMap(Optional::stream) // returns an empty stream if empty
                                 // maps the optionals if present to new BadgeCards
                                 .map(badgeType -> new BadgeCard(solvedChallenge.getUserId(), badgeType))
                                 .collect(Collectors.toList());
+        }
 
-                badgeRepository.saveAll(newBadgeCards);
-
-                return newBadgeCards;
+        /**
+         * Runs the action once the current transaction commits, or straight away
+         * if there is no transaction.
+         */
+        private static void afterCommit(final Runnable action) {
+                if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                        action.run();
+                        return;
+                }
+                TransactionSynchronizationManager.registerSynchronization(
+                                new TransactionSynchronization() {
+                                        @Override
+                                        public void afterCommit() {
+                                                action.run();
+                                        }
+                                });
         }
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package microservices.book.gamification.game;
+
+import lombok.extern.slf4j.Slf4j;
+import microservices.book.gamification.game.domain.BadgeCard;
+import microservices.book.gamification.game.domain.BadgeType;
+import microservices.book.gamification.game.domain.LeaderBoardRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the leader board in memory, so reading it doesn't need to aggregate
+ * all the ScoreCards in the database.
+ * It holds a sorted set with the top N positions, which is updated
+ * incrementally every time a user scores.
+ * Every instance only sees the scores of the events it processes, and with
+ * several instances each one only gets the users of its partitions, so the
+ * board is also reloaded from the database every
+ * game.leaderboard.refresh-interval-ms. That bounds how long an instance can
+ * miss the scores processed by the others.
+ */
+/*
+ * Scores only grow, so a user outside the top N can only get in by beating the
+ * last position, and a user inside can only move up. That's why it's enough to
+ * keep a bounded set of positions instead of sorting all the users every time.
+ * The rows served to the clients are an immutable snapshot that is replaced
+ * after every change, so readers never block the event processing.
+ * The writers use a ReentrantLock instead of synchronized because they may
+ * query the database while holding it: with virtual threads enabled, blocking
+ * inside a synchronized block would pin the carrier thread.
+ */
+@Slf4j
+@Component
+class InMemoryLeaderBoard {
+
+    private static final Comparator<Position> RANKING = Comparator
+            .comparingLong(Position::getTotalScore).reversed()
+            .thenComparingLong(Position::getUserId);
+
+    private final UserScoreRepository userScoreRepository;
+    private final BadgeRepository badgeRepository;
+    private final int size;
+
+    // The top N positions, their scores by user and their badges
+    private final TreeSet<Position> top = new TreeSet<>(RANKING);
+    private final Map<Long, Long> topScores = new HashMap<>();
+    private final Map<Long, List<String>> topBadges = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile List<LeaderBoardRow> rows = List.of();
+    private volatile boolean ready;
+
+    InMemoryLeaderBoard(final UserScoreRepository userScoreRepository,
+                        final BadgeRepository badgeRepository,
+                        @Value("${game.leaderboard.size:10}") final int size) {
+        this.userScoreRepository = userScoreRepository;
+        this.badgeRepository = badgeRepository;
+        this.size = size;
+    }
+
+    /**
+     * Discards the in-memory state and loads it again from the repositories.
+     */
+    /*
+     * The database is read while holding the lock: a score committed before
+     * the read is already included, and the ones committed after it wait for
+     * the lock and are applied on top of the reloaded board.
+     */
+    public void rebuild() {
+        lock.lock();
+        try {
+            top.clear();
+            topScores.clear();
+            topBadges.clear();
+            userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, size))
+                    .forEach(userScore -> offer(new Position(userScore.getUserId(),
+                            userScore.getTotalScore())));
+            Map<Long, List<BadgeCard>> badgesByUser = badgeRepository.findByUserIdsGroupedByUser(
+                    topScores.keySet());
+            top.forEach(p -> topBadges.put(p.getUserId(),
+                    descriptions(badgesByUser.getOrDefault(p.getUserId(), List.of()))));
+            publish();
+            ready = true;
+            log.debug("Leader board loaded in memory with {} positions", top.size());
+        } catch (final RuntimeException e) {
+            ready = false;
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reloads the board with the scores processed by all the instances. If
+     * the database can't be read, the board is served from the database
+     * until a reload works again.
+     */
+    @Scheduled(fixedDelayString = "${game.leaderboard.refresh-interval-ms:5000}",
+            initialDelayString = "${game.leaderboard.refresh-interval-ms:5000}")
+    public void refresh() {
+        try {
+            rebuild();
+        } catch (final RuntimeException e) {
+            log.warn("Could not reload the leader board: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Updates the board after a user scores and, optionally, wins new badges.
+     *
+     * @param userId     the id of the user
+     * @param totalScore the new total score of the user
+     * @param newBadges  the badges won with that score, if any
+     */
+    public void userScored(final long userId, final long totalScore,
+                           final List<BadgeType> newBadges) {
+        if (!ready) {
+            return;
+        }
+        lock.lock();
+        try {
+            Long previous = topScores.get(userId);
+            boolean wasInTop = previous != null && top.remove(new Position(userId, previous));
+            if (wasInTop) {
+                topScores.remove(userId);
+            }
+            boolean isInTop = offer(new Position(userId, totalScore));
+            if (isInTop && !wasInTop) {
+                topBadges.put(userId, loadBadges(userId));
+            } else if (isInTop && !newBadges.isEmpty()) {
+                // A reload may have already loaded them
+                List<String> known = topBadges.getOrDefault(userId, List.of());
+                List<String> badges = new ArrayList<>(newBadges.size() + known.size());
+                newBadges.stream()
+                        .map(BadgeType::getDescription)
+                        .filter(description -> !known.contains(description))
+                        .forEach(badges::add);
+                badges.addAll(known);
+                topBadges.put(userId, List.copyOf(badges));
+            } else if (!isInTop) {
+                topBadges.remove(userId);
+            }
+            if (isInTop || wasInTop) {
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return false if the board couldn't be loaded, so it shouldn't be used
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return the number of positions kept in the board
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the top N rows of the leader board, sorted by highest score
+     */
+    public List<LeaderBoardRow> getTopRows() {
+        return rows;
+    }
+
+    /**
+     * Adds the position to the top N if it fits, evicting the last one if needed.
+     *
+     * @return true if the position is now part of the top N
+     */
+    private boolean offer(final Position position) {
+        if (top.size() >= size) {
+            Position last = top.last();
+            if (RANKING.compare(position, last) >= 0) {
+                return false;
+            }
+            top.pollLast();
+            topScores.remove(last.getUserId());
+            topBadges.remove(last.getUserId());
+        }
+        topScores.put(position.getUserId(), position.getTotalScore());
+        return top.add(position);
+    }
+
+    private List<String> loadBadges(final long userId) {
+        return descriptions(badgeRepository.findByUserIdOrderByBadgeTimestampDesc(userId));
+    }
+
+    private static List<String> descriptions(final List<BadgeCard> badgeCards) {
+        return badgeCards.stream()
+                .map(BadgeCard::getBadgeType)
+                .map(BadgeType::getDescription)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    // The snapshot is only replaced if it changed, the stream compares references
+    private void publish() {
+        List<LeaderBoardRow> next = top.stream()
+                .map(p -> new LeaderBoardRow(p.getUserId(), p.getTotalScore(),
+                        topBadges.getOrDefault(p.getUserId(), List.of())))
+                .collect(Collectors.toUnmodifiableList());
+        if (!next.equals(rows)) {
+            rows = next;
+        }
+    }
+
+    @lombok.Value
+    private static class Position {
+        long userId;
+        long totalScore;
+    }
+}
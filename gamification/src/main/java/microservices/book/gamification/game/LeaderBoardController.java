@@ -2,9 +2,15 @@ package microservices.book.gamification.game;
 
 import lombok.RequiredArgsConstructor;
 import microservices.book.gamification.game.domain.LeaderBoardRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -24,9 +30,48 @@ import java.util.List;
 class LeaderBoardController {
 
     private final LeaderBoardService leaderBoardService;
+    private final LeaderBoardStream leaderBoardStream;
 
+    @Value("${game.leaderboard.max-limit:100}")
+    private int maxLimit;
+
+    /*
+     * Without parameters, it returns the top of the leader board as before.
+     * Pages can be requested with limit and offset, or with limit and the
+     * totalScore and userId of the last row already received (afterScore and
+     * afterUserId), which is cheaper for deep pages since the database doesn't
+     * need to skip all the previous rows.
+     */
     @GetMapping
-    public List<LeaderBoardRow> getLeaderBoard() {
-        return leaderBoardService.getCurrentLeaderBoard();
+    public List<LeaderBoardRow> getLeaderBoard(
+            @RequestParam(name = "limit", required = false) final Integer limit,
+            @RequestParam(name = "offset", defaultValue = "0") final int offset,
+            @RequestParam(name = "afterScore", required = false) final Long afterScore,
+            @RequestParam(name = "afterUserId", required = false) final Long afterUserId) {
+        if (limit == null && offset == 0 && afterScore == null && afterUserId == null) {
+            return leaderBoardService.getCurrentLeaderBoard();
+        }
+        int pageSize = limit != null ? limit : maxLimit;
+        if (pageSize < 1 || pageSize > maxLimit || offset < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + maxLimit + " and offset can't be negative");
+        }
+        if (afterScore == null && afterUserId == null) {
+            return leaderBoardService.getLeaderBoard(offset, pageSize);
+        }
+        if (afterScore == null || afterUserId == null || offset != 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "afterScore and afterUserId go together and can't be combined with offset");
+        }
+        return leaderBoardService.getLeaderBoardAfter(afterScore, afterUserId, pageSize);
+    }
+
+    /*
+     * Streams the top of the leader board as server-sent events, so the
+     * dashboards don't need to poll GET /leaders to keep it up to date.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLeaderBoard() {
+        return leaderBoardStream.subscribe();
     }
-}
\ No newline at end of file
+}
@@ -10,4 +10,22 @@ public interface LeaderBoardService {
      * @return the current leader board ranked from high to low score
      */
     List<LeaderBoardRow> getCurrentLeaderBoard();
+
+    /**
+     * @param offset the number of rows to skip
+     * @param limit  the maximum number of rows to return
+     * @return a page of the leader board ranked from high to low score
+     */
+    List<LeaderBoardRow> getLeaderBoard(int offset, int limit);
+
+    /**
+     * Returns the rows that come after a given one, so clients can go through
+     * the leader board using the last row they got as a cursor.
+     *
+     * @param totalScore the total score of the last row already seen
+     * @param userId     the user id of the last row already seen
+     * @param limit      the maximum number of rows to return
+     * @return the next page of the leader board ranked from high to low score
+     */
+    List<LeaderBoardRow> getLeaderBoardAfter(long totalScore, long userId, int limit);
 }
\ No newline at end of file
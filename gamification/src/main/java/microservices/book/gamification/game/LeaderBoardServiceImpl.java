@@ -1,23 +1,75 @@
 package microservices.book.gamification.game;
 
 import lombok.RequiredArgsConstructor;
+import microservices.book.gamification.game.domain.BadgeCard;
 import microservices.book.gamification.game.domain.LeaderBoardRow;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 class LeaderBoardServiceImpl implements LeaderBoardService {
 
-    private final ScoreRepository scoreRepository;
+    private final UserScoreRepository userScoreRepository;
     private final BadgeRepository badgeRepository;
+    private final InMemoryLeaderBoard inMemoryLeaderBoard;
 
     @Override
     public List<LeaderBoardRow> getCurrentLeaderBoard() {
-        // Get score only
-        List<LeaderBoardRow> scoreOnly = scoreRepository.findFirst10();
+        return getLeaderBoard(0, inMemoryLeaderBoard.getSize());
+    }
+
+    @Override
+    public List<LeaderBoardRow> getLeaderBoard(final int offset, final int limit) {
+        // The in-memory board is the fast path, no queries involved
+        if (inMemoryLeaderBoard.isReady() && offset + limit <= inMemoryLeaderBoard.getSize()) {
+            List<LeaderBoardRow> rows = inMemoryLeaderBoard.getTopRows();
+            return rows.subList(Math.min(offset, rows.size()),
+                    Math.min(offset + limit, rows.size()));
+        }
+        // An offset position points to the last row already seen
+        ScrollPosition position = offset == 0 ?
+                ScrollPosition.offset() : ScrollPosition.offset(offset - 1);
+        return leaderBoardFromDatabase(position, limit);
+    }
+
+    @Override
+    public List<LeaderBoardRow> getLeaderBoardAfter(final long totalScore, final long userId,
+                                                    final int limit) {
+        if (inMemoryLeaderBoard.isReady()) {
+            List<LeaderBoardRow> rows = inMemoryLeaderBoard.getTopRows();
+            List<LeaderBoardRow> after = rows.stream()
+                    .filter(row -> row.getTotalScore() < totalScore ||
+                            (row.getTotalScore() == totalScore && row.getUserId() > userId))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+            // If the board isn't full, it has all the users, so there's nothing else
+            if (after.size() == limit || rows.size() < inMemoryLeaderBoard.getSize()) {
+                return after;
+            }
+        }
+        return leaderBoardFromDatabase(ScrollPosition.forward(
+                Map.of("totalScore", totalScore, "userId", userId)), limit);
+    }
+
+    /**
+     * Builds a page of the leader board from the score aggregates in the
+     * database. It's used for the pages that are not kept in memory, and for
+     * all of them if the in-memory board couldn't be loaded.
+     */
+    private List<LeaderBoardRow> leaderBoardFromDatabase(final ScrollPosition position,
+                                                         final int limit) {
+        // Get score only, the limit is applied by the database
+        List<LeaderBoardRow> scoreOnly = userScoreRepository
+                .findAllByOrderByTotalScoreDescUserIdAsc(position, Limit.of(limit))
+                .stream()
+                .map(s -> new LeaderBoardRow(s.getUserId(), s.getTotalScore()))
+                .collect(Collectors.toList());
         // Combine with badges
         /*
          * this code used the withBadges method to copy an immutable object with a new
@@ -27,11 +79,16 @@ class LeaderBoardServiceImpl implements LeaderBoardService {
          * each object
          * with a copy with the corresponding badge list
          */
+        // The badges of all the rows are loaded at once, not one query per row
+        Map<Long, List<BadgeCard>> badgesByUser = badgeRepository
+                .findByUserIdsGroupedByUser(scoreOnly.stream()
+                        .map(LeaderBoardRow::getUserId)
+                        .collect(Collectors.toList()));
         return scoreOnly
                 .stream()
                 .map(row -> {
-                    List<String> badges = badgeRepository
-                            .findByUserIdOrderByBadgeTimestampDesc(row.getUserId())
+                    List<String> badges = badgesByUser
+                            .getOrDefault(row.getUserId(), List.of())
                             .stream()
                             .map(b -> b.getBadgeType().getDescription())
                             .collect(Collectors.toList());
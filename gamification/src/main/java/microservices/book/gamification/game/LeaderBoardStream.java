@@ -0,0 +1,235 @@
+package microservices.book.gamification.game;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import microservices.book.gamification.game.domain.LeaderBoardDiff;
+import microservices.book.gamification.game.domain.LeaderBoardRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes the top of the in-memory leader board to the clients subscribed to
+ * /leaders/stream as server-sent events. Every client gets the whole board
+ * when it subscribes (a "leaders" event) and then only the positions that
+ * change (a "diff" event, see {@link LeaderBoardDiff}).
+ * The changes are checked every game.leaderboard.stream.interval-ms, so the
+ * updates that happen in between are coalesced in a single diff, and nothing
+ * is sent while the top doesn't change.
+ * The events are written by game.leaderboard.stream.senders threads, and a
+ * client that has more than game.leaderboard.stream.max-pending events
+ * waiting to be written is too slow to follow the board, so it's dropped (it
+ * reconnects and gets the whole board again).
+ */
+/*
+ * The board publishes a new immutable snapshot every time its top changes, so
+ * checking for changes is just comparing references. The diff is serialized
+ * once and the same text is sent to all the clients.
+ * Every client must receive the diffs calculated from the version it already
+ * has, that's why the new clients get the last version that was broadcast,
+ * not the current one, and why subscribing and broadcasting share a lock.
+ * Under that lock the events are only queued per client, which never blocks.
+ * They're written outside it, so a client stuck in a write only holds a sender
+ * thread and its own queue, not the other clients or the new subscriptions.
+ */
+@Slf4j
+@Component
+class LeaderBoardStream {
+
+    static final String LEADERS_EVENT = "leaders";
+    static final String DIFF_EVENT = "diff";
+
+    private final InMemoryLeaderBoard leaderBoard;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final int maxPending;
+    private final Executor senders;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<LeaderBoardRow> lastSent = List.of();
+
+    @Autowired
+    LeaderBoardStream(final InMemoryLeaderBoard leaderBoard,
+                      final ObjectMapper objectMapper,
+                      final MeterRegistry meterRegistry,
+                      @Value("${game.leaderboard.stream.timeout:30m}") final Duration timeout,
+                      @Value("${game.leaderboard.stream.max-pending:10}") final int maxPending,
+                      @Value("${game.leaderboard.stream.senders:4}") final int senders) {
+        this(leaderBoard, objectMapper, meterRegistry, timeout, maxPending,
+                newSenders(Math.max(1, senders)));
+    }
+
+    LeaderBoardStream(final InMemoryLeaderBoard leaderBoard,
+                      final ObjectMapper objectMapper,
+                      final MeterRegistry meterRegistry,
+                      final Duration timeout,
+                      final int maxPending,
+                      final Executor senders) {
+        this.leaderBoard = leaderBoard;
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeout.toMillis();
+        this.maxPending = maxPending;
+        this.senders = senders;
+        Gauge.builder("leaderboard.stream.subscribers", subscribers, List::size)
+                .description("Clients subscribed to the leader board stream")
+                .register(meterRegistry);
+    }
+
+    private static ExecutorService newSenders(final int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "leaderboard-sender-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (senders instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * @return a new emitter that receives the current board and its changes
+     */
+    public SseEmitter subscribe() {
+        return register(new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter register(final SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        lock.lock();
+        try {
+            subscribers.add(subscriber);
+            subscriber.enqueue(LEADERS_EVENT, toJson(lastSent));
+        } finally {
+            lock.unlock();
+        }
+        return emitter;
+    }
+
+    /**
+     * Sends the changes of the top of the board since the last time, if any,
+     * to all the subscribed clients.
+     */
+    @Scheduled(fixedDelayString = "${game.leaderboard.stream.interval-ms:1000}")
+    public void broadcast() {
+        if (!leaderBoard.isReady()) {
+            return;
+        }
+        List<LeaderBoardRow> current = leaderBoard.getTopRows();
+        lock.lock();
+        try {
+            if (current == lastSent) {
+                return;
+            }
+            LeaderBoardDiff diff = LeaderBoardDiff.between(lastSent, current);
+            boolean changed = diff.changesFrom(lastSent.size());
+            lastSent = current;
+            if (!changed || subscribers.isEmpty()) {
+                return;
+            }
+            String json = toJson(diff);
+            subscribers.forEach(subscriber -> subscriber.enqueue(DIFF_EVENT, json));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String toJson(final Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the leader board", e);
+        }
+    }
+
+    /*
+     * The events of a client are written in order by a single task at a time,
+     * the one that sets the sending flag. A dropped client is completed by
+     * that task too, once its current write returns: completing the emitter
+     * from the broadcast would wait for that write.
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean dropped;
+
+        Subscriber(final SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(final String event, final String json) {
+            if (dropped) {
+                return;
+            }
+            if (pendingCount.incrementAndGet() > maxPending) {
+                log.debug("Dropping leader board subscriber, it has {} events waiting", maxPending);
+                drop();
+            } else {
+                pending.add(SseEmitter.event().name(event).data(json));
+            }
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::sendPending);
+            }
+        }
+
+        private void sendPending() {
+            SseEmitter.SseEventBuilder next;
+            while (!dropped && (next = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                try {
+                    emitter.send(next);
+                } catch (final IOException | IllegalStateException e) {
+                    // The client is gone, the container completes the emitter
+                    log.debug("Dropping leader board subscriber: {}", e.getMessage());
+                    drop();
+                    return;
+                }
+            }
+            if (dropped) {
+                emitter.complete();
+                return;
+            }
+            sending.set(false);
+            // An event queued after the last poll, and before the flag was cleared
+            if (!pending.isEmpty() && sending.compareAndSet(false, true)) {
+                senders.execute(this::sendPending);
+            }
+        }
+
+        private void drop() {
+            dropped = true;
+            subscribers.remove(this);
+            pending.clear();
+        }
+    }
+}
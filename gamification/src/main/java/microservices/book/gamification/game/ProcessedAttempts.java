@@ -0,0 +1,122 @@
+package microservices.book.gamification.game;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import microservices.book.gamification.game.domain.ScoreCard;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers the ids of the last attempts that were processed, so the events
+ * that the broker delivers again can be dropped without querying the database.
+ * The number of ids kept is bounded by game.processed-attempts.size, and the
+ * duplicates found are counted in the game.attempts.duplicates metric.
+ * Older duplicates are still rejected by the unique constraint on the
+ * attemptId of the ScoreCards, see {@link #isDuplicate(DataIntegrityViolationException)}.
+ */
+/*
+ * It's a ring buffer of ids plus a set to look them up: when the buffer is
+ * full, the oldest id is removed from the set to make room for the new one.
+ * Unlike a Bloom filter, it never gives false positives, so a new attempt is
+ * never dropped by mistake.
+ * The ids are added once the transaction that processed them commits. If it's
+ * rolled back, the event can be processed again.
+ */
+@Component
+class ProcessedAttempts {
+
+    private final long[] ring;
+    private final Set<Long> ids;
+    private final Counter duplicates;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int next;
+    private int count;
+
+    ProcessedAttempts(final MeterRegistry meterRegistry,
+                      @Value("${game.processed-attempts.size:10000}") final int size) {
+        this.ring = new long[size];
+        this.ids = new HashSet<>(size * 4 / 3 + 1);
+        this.duplicates = Counter.builder("game.attempts.duplicates")
+                .description("Attempts dropped because they were already processed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param attemptId the id of the attempt
+     * @return true if the attempt was processed recently
+     */
+    public boolean contains(final long attemptId) {
+        lock.lock();
+        try {
+            if (!ids.contains(attemptId)) {
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        duplicates.increment();
+        return true;
+    }
+
+    /**
+     * Remembers the attempt, forgetting the oldest one if the buffer is full.
+     *
+     * @param attemptId the id of the attempt
+     */
+    public void add(final long attemptId) {
+        if (ring.length == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!ids.add(attemptId)) {
+                return;
+            }
+            if (count == ring.length) {
+                ids.remove(ring[next]);
+            } else {
+                count++;
+            }
+            ring[next] = attemptId;
+            next = (next + 1) % ring.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param e the error when storing the results of an attempt
+     * @return true if it failed because the ScoreCard of the attempt already exists
+     */
+    public static boolean isDuplicate(final DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return isUniqueAttempt(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+
+    /*
+     * The name is extracted from the error by the Hibernate dialect. Some
+     * databases qualify it with the schema or change its case, and H2 reports
+     * the index that backs the constraint (UK_SCORE_CARD_ATTEMPT_INDEX_7).
+     */
+    static boolean isUniqueAttempt(final String constraintName) {
+        if (constraintName == null) {
+            return false;
+        }
+        String name = constraintName.substring(constraintName.lastIndexOf('.') + 1)
+                .replace("\"", "")
+                .toLowerCase(Locale.ROOT);
+        return name.equals(ScoreCard.UNIQUE_ATTEMPT)
+                || name.startsWith(ScoreCard.UNIQUE_ATTEMPT + "_index_");
+    }
+}
@@ -1,7 +1,8 @@
 package microservices.book.gamification.game;
 
-import microservices.book.gamification.game.domain.LeaderBoardRow;
 import microservices.book.gamification.game.domain.ScoreCard;
+import microservices.book.gamification.game.domain.UserScore;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
@@ -11,21 +12,16 @@ import java.util.Optional;
 
 /**
  * Handles CRUD operations with ScoreCards and other related score queries
- * For scorecards, you need other query types. There are three requirements thus
+ * For scorecards, you need other query types. There are two requirements thus
  * far.
  * 1. Calculate the total score of a user.
- * 2. Get a list of users with the highest score, ordered, as
- * LeaderBoardRow objects.
- * 3. Read all ScoreCard records by user ID.
+ * 2. Read all ScoreCard records by user ID.
+ * The leader board is read from the {@link UserScore} aggregates, see
+ * {@link UserScoreRepository}, and the ScoreCards are only aggregated again
+ * to backfill and reconcile them.
  */
 public interface ScoreRepository extends CrudRepository<ScoreCard, Long> {
     /**
-     * For scorecards, you need other query types. There are three requirements thus
-     * far.
-     * 1. Calculate the total score of a user.
-     * 2. Get a list of users with the highest score, ordered, as LeaderBoardRow objects.
-     * 3. Read all ScoreCard records by user ID.
-     * 
      * Gets the total score for a given user: the sum of the scores of all
      * their ScoreCards.
      * Unfortunately, Spring Data JPA’s query methods don’t support aggregations.
@@ -42,23 +38,6 @@ public interface ScoreRepository extends CrudRepository<ScoreCard, Long> {
     @Query("SELECT SUM(s.score) FROM ScoreCard s WHERE s.userId = :userId GROUP BY s.userId")
     Optional<Integer> getTotalScoreForUser(@Param("userId") Long userId);
 
-    /**
-     * Retrieves a list of {@link LeaderBoardRow}s representing the Leader Board
-     * of users and their total score.
-     * In JPQL, you can use the constructors available in
-     * your Java classes. What you do in this example is an aggregation based on the
-     * total score,
-     * and you construct LeaderBoardRow objects using the two-argument constructor
-     * you
-     * defined (which sets an empty list of badges)
-     *
-     * @return the leader board, sorted by highest score first.
-     */
-    @Query("SELECT NEW microservices.book.gamification.game.domain.LeaderBoardRow(s.userId, SUM(s.score)) " +
-            "FROM ScoreCard s " +
-            "GROUP BY s.userId ORDER BY SUM(s.score) DESC")
-    List<LeaderBoardRow> findFirst10();
-
     /**
      * Retrieves all the ScoreCards for a given user, identified by his user id.
      *
@@ -68,4 +47,30 @@ public interface ScoreRepository extends CrudRepository<ScoreCard, Long> {
      */
     List<ScoreCard> findByUserIdOrderByScoreTimestampDesc(final Long userId);
 
+    /**
+     * Calculates the {@link UserScore} aggregates from the ScoreCards, for a
+     * page of users sorted by id. It's an expensive query, only used to
+     * backfill and reconcile the aggregates that are kept up to date with
+     * every new ScoreCard.
+     *
+     * @param afterUserId the last user id of the previous page, 0 for the first one
+     * @param limit       the maximum number of users in the page
+     * @return the aggregates of the next users that have at least one ScoreCard
+     */
+    @Query("SELECT NEW microservices.book.gamification.game.domain.UserScore(" +
+            "s.userId, SUM(s.score), COUNT(s), MAX(s.scoreTimestamp)) " +
+            "FROM ScoreCard s WHERE s.userId > :afterUserId GROUP BY s.userId ORDER BY s.userId")
+    List<UserScore> aggregateUserScoresAfter(@Param("afterUserId") Long afterUserId, Limit limit);
+
+    /**
+     * Calculates the {@link UserScore} aggregate of a single user from their ScoreCards.
+     *
+     * @param userId the id of the user
+     * @return the aggregate, empty if the user doesn't have any ScoreCard
+     */
+    @Query("SELECT NEW microservices.book.gamification.game.domain.UserScore(" +
+            "s.userId, SUM(s.score), COUNT(s), MAX(s.scoreTimestamp)) " +
+            "FROM ScoreCard s WHERE s.userId = :userId GROUP BY s.userId")
+    Optional<UserScore> aggregateUserScore(@Param("userId") Long userId);
+
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package microservices.book.gamification.game;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the processing of the events in amqp.listener.workers threads, always
+ * in the same thread for the same user. The events of a user are processed
+ * one by one in the order they arrive, while the events of different users
+ * are processed in parallel.
+ * The number of tasks waiting is published as the game.workers.queued metric.
+ */
+/*
+ * Every worker is an executor with a single thread, and the worker of a user
+ * is chosen with the hash of their id, see #partitionOf. The queues of the
+ * workers are not bounded here because the listeners already bound how many
+ * events can be in flight (the prefetch count, or the size of a batch).
+ */
+@Slf4j
+@Component
+class UserPartitionedExecutor {
+
+    private final ThreadPoolExecutor[] workers;
+
+    UserPartitionedExecutor(final MeterRegistry meterRegistry,
+                            @Value("${amqp.listener.workers:1}") final int workers) {
+        this.workers = new ThreadPoolExecutor[Math.max(1, workers)];
+        AtomicInteger threads = new AtomicInteger();
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    r -> new Thread(r, "game-worker-" + threads.incrementAndGet()));
+        }
+        Gauge.builder("game.workers.queued", this,
+                        e -> Arrays.stream(e.workers).mapToInt(w -> w.getQueue().size()).sum())
+                .description("Events waiting for their worker")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the number of workers, which is also the number of partitions
+     */
+    public int getWorkers() {
+        return workers.length;
+    }
+
+    /**
+     * @param userId the id of the user
+     * @return the worker (partition) that processes the events of the user
+     */
+    public int partitionOf(final long userId) {
+        return partitionOf(userId, workers.length);
+    }
+
+    /**
+     * Runs the task in the worker of the user, after the tasks submitted
+     * before for the same user.
+     *
+     * @param userId the id of the user
+     * @param task   the processing of the event
+     * @return a future completed with the result of the task, or with the
+     *         exception it throws
+     */
+    public <T> CompletableFuture<T> submit(final long userId, final Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        workers[partitionOf(userId)].execute(() -> {
+            try {
+                result.complete(task.get());
+            } catch (final Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        Arrays.stream(workers).forEach(ExecutorService::shutdown);
+        for (ExecutorService worker : workers) {
+            if (!worker.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Game worker didn't finish in time, events will be delivered again");
+                worker.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @param userId     the id of the user
+     * @param partitions the number of partitions
+     * @return the partition of the user, between 0 and partitions - 1
+     */
+    static int partitionOf(final long userId, final int partitions) {
+        return Math.floorMod(Long.hashCode(userId), partitions);
+    }
+}
@@ -0,0 +1,150 @@
+package microservices.book.gamification.game;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import microservices.book.gamification.game.domain.UserScore;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Rebuilds the {@link UserScore} aggregates from the ScoreCards.
+ * It backfills the aggregates when the application starts with ScoreCards
+ * but without aggregates (e.g. the first time after an upgrade), and it can
+ * be scheduled with the game.user-score.reconcile-cron property to fix any
+ * drift between the aggregates and the cards.
+ * The users are compared in pages of game.user-score.reconcile-page-size, so
+ * neither the cards nor the aggregates are ever loaded all together, and
+ * every aggregate is fixed in its own short transaction.
+ */
+@Slf4j
+@Component
+class UserScoreReconciler implements SmartInitializingSingleton {
+
+    private final ScoreRepository scoreRepository;
+    private final UserScoreRepository userScoreRepository;
+    private final InMemoryLeaderBoard leaderBoard;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final int pageSize;
+
+    UserScoreReconciler(final ScoreRepository scoreRepository,
+                        final UserScoreRepository userScoreRepository,
+                        final InMemoryLeaderBoard leaderBoard,
+                        final TransactionTemplate transactionTemplate,
+                        final EntityManager entityManager,
+                        @Value("${game.user-score.reconcile-page-size:1000}") final int pageSize) {
+        this.scoreRepository = scoreRepository;
+        this.userScoreRepository = userScoreRepository;
+        this.leaderBoard = leaderBoard;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.pageSize = pageSize;
+    }
+
+    /*
+     * This runs once all the singletons are created but before the context
+     * starts the RabbitMQ listeners, so the in-memory leader board is loaded
+     * from complete aggregates and no event can sneak in between.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            if (userScoreRepository.count() == 0 && scoreRepository.count() > 0) {
+                log.info("Backfilling the user score aggregates from the score cards");
+                reconcile();
+            } else {
+                leaderBoard.rebuild();
+            }
+        } catch (final Exception e) {
+            log.error("Could not build the leader board in memory, " +
+                    "it'll be served from the database", e);
+        }
+    }
+
+    /**
+     * Compares the aggregates with the ScoreCards, page by page of users,
+     * fixes the ones that differ and reloads the in-memory leader board.
+     *
+     * @return the number of aggregates that were created or fixed
+     */
+    @Scheduled(cron = "${game.user-score.reconcile-cron:-}")
+    public int reconcile() {
+        int fixed = 0;
+        long afterUserId = 0;
+        List<UserScore> page;
+        do {
+            final long after = afterUserId;
+            page = scoreRepository.aggregateUserScoresAfter(after, Limit.of(pageSize));
+            for (UserScore aggregate : drifted(page)) {
+                if (fix(aggregate.getUserId())) {
+                    fixed++;
+                }
+            }
+            if (!page.isEmpty()) {
+                afterUserId = page.get(page.size() - 1).getUserId();
+            }
+        } while (page.size() == pageSize);
+        log.info("Reconciled {} user score aggregates", fixed);
+        leaderBoard.rebuild();
+        return fixed;
+    }
+
+    private List<UserScore> drifted(final List<UserScore> page) {
+        Map<Long, UserScore> current = StreamSupport.stream(userScoreRepository
+                        .findAllById(page.stream().map(UserScore::getUserId).toList())
+                        .spliterator(), false)
+                .collect(Collectors.toMap(UserScore::getUserId, Function.identity()));
+        return page.stream()
+                .filter(aggregate -> !sameTotals(aggregate, current.get(aggregate.getUserId())))
+                .toList();
+    }
+
+    /*
+     * An attempt could have been scored after the page was aggregated, so we
+     * lock the row first (as the game logic does) and only then aggregate that
+     * user again: every card committed before the lock is counted, and no new
+     * one can commit until this transaction ends. A user without a row yet
+     * gets it inserted, never merged: if the game logic inserts it at the same
+     * time one of the two fails, and if it's this one the next run checks
+     * that user again.
+     */
+    private boolean fix(final Long userId) {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                Optional<UserScore> locked = userScoreRepository.findByUserId(userId);
+                return scoreRepository.aggregateUserScore(userId).map(fresh -> {
+                    locked.ifPresentOrElse(userScore -> {
+                        userScore.setTotalScore(fresh.getTotalScore());
+                        userScore.setCardCount(fresh.getCardCount());
+                        userScore.setLastScoreTimestamp(fresh.getLastScoreTimestamp());
+                    }, () -> entityManager.persist(fresh));
+                    return true;
+                }).orElse(false);
+            }));
+        } catch (final DataIntegrityViolationException e) {
+            log.warn("The aggregate of user {} was created while reconciling it, " +
+                    "it'll be checked again in the next run", userId);
+            return false;
+        }
+    }
+
+    // The streaks are not part of the comparison, they're not in the cards
+    private static boolean sameTotals(final UserScore aggregate, final UserScore userScore) {
+        return userScore != null &&
+                aggregate.getTotalScore() == userScore.getTotalScore() &&
+                aggregate.getCardCount() == userScore.getCardCount() &&
+                aggregate.getLastScoreTimestamp() == userScore.getLastScoreTimestamp();
+    }
+}
@@ -0,0 +1,47 @@
+package microservices.book.gamification.game;
+
+import jakarta.persistence.LockModeType;
+import microservices.book.gamification.game.domain.UserScore;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Handles CRUD operations with the UserScore aggregates.
+ */
+public interface UserScoreRepository extends CrudRepository<UserScore, Long> {
+
+    /**
+     * Retrieves the score aggregate of a user, locking the row until the end
+     * of the transaction so concurrent updates for the same user don't get lost.
+     *
+     * @param userId the id of the user
+     * @return the aggregate, empty if the user didn't score yet
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<UserScore> findByUserId(final Long userId);
+
+    /**
+     * @param pageable the number of aggregates to retrieve
+     * @return the aggregates sorted by highest score first
+     */
+    List<UserScore> findAllByOrderByTotalScoreDescUserIdAsc(final Pageable pageable);
+
+    /**
+     * Scrolls through the aggregates sorted by highest score first, starting
+     * after the given position. The position can be an offset or a keyset with
+     * the totalScore and userId of the last aggregate already seen.
+     *
+     * @param position where to start
+     * @param limit    the maximum number of aggregates to retrieve
+     * @return the window of aggregates
+     */
+    Window<UserScore> findAllByOrderByTotalScoreDescUserIdAsc(final ScrollPosition position,
+                                                              final Limit limit);
+}
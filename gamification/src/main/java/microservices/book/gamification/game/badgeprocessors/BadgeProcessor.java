@@ -2,9 +2,8 @@ package microservices.book.gamification.game.badgeprocessors;
 
 import microservices.book.gamification.challenge.ChallengeSolvedEvent;
 import microservices.book.gamification.game.domain.BadgeType;
-import microservices.book.gamification.game.domain.ScoreCard;
+import microservices.book.gamification.game.domain.UserStats;
 
-import java.util.List;
 import java.util.Optional;
 
 public interface BadgeProcessor {
@@ -12,11 +11,15 @@ public interface BadgeProcessor {
     /**
      * Processes some or all of the passed parameters and decides if the user
      * is entitled to a badge.
+     * The statistics are kept up to date with every attempt, so processors
+     * should decide based on them (and the attempt) instead of querying the
+     * history of the user.
      *
+     * @param stats  the statistics of the user, including the solved attempt
+     * @param solved the solved attempt
      * @return a BadgeType if the user is entitled to this badge, otherwise empty
      */
-    Optional<BadgeType> processForOptionalBadge(int currentScore,
-                                                List<ScoreCard> scoreCardList,
+    Optional<BadgeType> processForOptionalBadge(UserStats stats,
                                                 ChallengeSolvedEvent solved);
 
     /**
@@ -2,19 +2,17 @@ package microservices.book.gamification.game.badgeprocessors;
 
 import microservices.book.gamification.challenge.ChallengeSolvedEvent;
 import microservices.book.gamification.game.domain.BadgeType;
-import microservices.book.gamification.game.domain.ScoreCard;
+import microservices.book.gamification.game.domain.UserStats;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
 import java.util.Optional;
 
 @Component
 public class FirstWonBadgeProcessor implements BadgeProcessor{
     @Override
-    public Optional<BadgeType> processForOptionalBadge(int currentScore,
-                                                       List<ScoreCard> scoreCardList,
+    public Optional<BadgeType> processForOptionalBadge(UserStats stats,
                                                        ChallengeSolvedEvent solved) {
-        return scoreCardList.size() == 1 ?
+        return stats.getCardCount() == 1 ?
                 Optional.of(BadgeType.FIRST_WON) : Optional.empty();
     }
 
@@ -2,20 +2,18 @@ package microservices.book.gamification.game.badgeprocessors;
 
 import microservices.book.gamification.challenge.ChallengeSolvedEvent;
 import microservices.book.gamification.game.domain.BadgeType;
-import microservices.book.gamification.game.domain.ScoreCard;
+import microservices.book.gamification.game.domain.UserStats;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
 import java.util.Optional;
 
 @Component
 class GoldBadgeProcessor implements BadgeProcessor {
 
     @Override
-    public Optional<BadgeType> processForOptionalBadge(int currentScore,
-                                                       List<ScoreCard> scoreCardList,
+    public Optional<BadgeType> processForOptionalBadge(UserStats stats,
                                                        ChallengeSolvedEvent solved) {
-        return currentScore > 400 ?
+        return stats.getTotalScore() > 400 ?
                 Optional.of(BadgeType.GOLD) :
                 Optional.empty();
     }
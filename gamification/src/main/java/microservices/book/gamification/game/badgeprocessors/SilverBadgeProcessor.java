@@ -2,17 +2,15 @@ package microservices.book.gamification.game.badgeprocessors;
 
 import microservices.book.gamification.challenge.ChallengeSolvedEvent;
 import microservices.book.gamification.game.domain.BadgeType;
-import microservices.book.gamification.game.domain.ScoreCard;
+import microservices.book.gamification.game.domain.UserStats;
 
-import java.util.List;
 import java.util.Optional;
 
 public class SilverBadgeProcessor implements BadgeProcessor{
     @Override
-    public Optional<BadgeType> processForOptionalBadge(int currentScore,
-                                                       List<ScoreCard> scoreCardList,
+    public Optional<BadgeType> processForOptionalBadge(UserStats stats,
                                                        ChallengeSolvedEvent solved) {
-        return currentScore > 150 ?
+        return stats.getTotalScore() > 150 ?
                 Optional.of(BadgeType.SILVER) :
                 Optional.empty();
     }
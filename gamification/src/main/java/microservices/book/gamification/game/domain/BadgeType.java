@@ -18,4 +18,26 @@ public enum BadgeType {
     LUCKY_NUMBER("Lucky number");
 
     private final String description;
+
+    /*
+     * Badges are stored with their ordinal, so it's also safe to use it as
+     * the position of the badge in a bitset of the badges of a user.
+     */
+    /**
+     * @return the bit that represents this badge in a bitset of badges
+     */
+    public long mask() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * @return the bitset with all the given badges
+     */
+    public static long maskOf(final Iterable<BadgeType> badgeTypes) {
+        long mask = 0;
+        for (BadgeType badgeType : badgeTypes) {
+            mask |= badgeType.mask();
+        }
+        return mask;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package microservices.book.gamification.game.domain;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The changes between two versions of the top of the leader board: the new
+ * number of rows and the rows of the positions that are different. A client
+ * that has the previous version gets the new one by replacing those positions
+ * and truncating the board to the new size.
+ */
+@Value
+public class LeaderBoardDiff {
+
+    int size;
+
+    List<Position> changes;
+
+    /**
+     * @param previous the rows the client already has
+     * @param current  the current rows
+     * @return the positions of the current rows that differ from the previous ones
+     */
+    public static LeaderBoardDiff between(final List<LeaderBoardRow> previous,
+                                          final List<LeaderBoardRow> current) {
+        List<Position> changes = new ArrayList<>();
+        for (int i = 0; i < current.size(); i++) {
+            if (i >= previous.size() || !Objects.equals(previous.get(i), current.get(i))) {
+                changes.add(new Position(i, current.get(i)));
+            }
+        }
+        return new LeaderBoardDiff(current.size(), List.copyOf(changes));
+    }
+
+    /**
+     * @param previousSize the number of rows of the previous version
+     * @return false if applying this diff wouldn't change anything
+     */
+    public boolean changesFrom(final int previousSize) {
+        return !changes.isEmpty() || size != previousSize;
+    }
+
+    @Value
+    public static class Position {
+        int position;
+        LeaderBoardRow row;
+    }
+}
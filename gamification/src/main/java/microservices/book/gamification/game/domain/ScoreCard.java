@@ -10,14 +10,25 @@ import jakarta.persistence.*;
  * You’ll assign points to every correct answer that users submit. To keep it
  * simple,
  * you’ll give points only if they send a correct attempt—ten points each time.
+ * There is only one card per attempt, so an event that is delivered twice
+ * can't score twice.
+ * The schema update can't add the unique constraint to a table that already
+ * has duplicated cards: it only logs the error and the duplicates keep being
+ * stored. Remove them first with remove-duplicate-score-cards.sql.
  */
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = ScoreCard.UNIQUE_ATTEMPT,
+        columnNames = "attemptId"),
+        // The cards of a user are read together, and aggregated in pages of users
+        indexes = @Index(name = "idx_score_card_user", columnList = "userId"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class ScoreCard {
     // The default score assigned to this card, if not specified.
     public static final int DEFAULT_SCORE = 10;
+    // The name of the unique constraint on the attemptId
+    public static final String UNIQUE_ATTEMPT = "uk_score_card_attempt";
     @Id
     @GeneratedValue
     private Long cardId;
@@ -0,0 +1,51 @@
+package microservices.book.gamification.game.domain;
+
+import lombok.*;
+import jakarta.persistence.*;
+
+/**
+ * Running aggregate of the ScoreCards of a user: their total score, how many
+ * cards they have, when they scored for the last time and their streaks of
+ * correct attempts.
+ * It's updated in the same transaction that stores every new ScoreCard, so
+ * the total never needs to be calculated again from all the cards.
+ * The index follows the order of the leader board, so its pages can be read
+ * without sorting the whole table.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_user_score_ranking",
+        columnList = "totalScore DESC, userId"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserScore {
+    @Id
+    private Long userId;
+    private long totalScore;
+    private long cardCount;
+    private long lastScoreTimestamp;
+    private int currentStreak;
+    private int longestStreak;
+
+    public UserScore(final Long userId) {
+        this(userId, 0, 0, 0);
+    }
+
+    /*
+     * The streaks can't be calculated from the ScoreCards since only the
+     * correct attempts have one, so the aggregates calculated from the cards
+     * start without them.
+     */
+    public UserScore(final Long userId, final long totalScore,
+                     final long cardCount, final long lastScoreTimestamp) {
+        this(userId, totalScore, cardCount, lastScoreTimestamp, 0, 0);
+    }
+
+    /**
+     * @param badges the bitset with the badges the user already has
+     * @return a snapshot of the statistics of the user
+     */
+    public UserStats toStats(final long badges) {
+        return new UserStats(totalScore, cardCount, currentStreak, longestStreak, badges);
+    }
+}
@@ -0,0 +1,23 @@
+package microservices.book.gamification.game.domain;
+
+import lombok.Value;
+
+/**
+ * Snapshot of the statistics of a user, right after scoring an attempt.
+ * It's what the badge processors need to decide if the user gets a badge,
+ * so they don't have to look at all the ScoreCards of the user.
+ */
+@Value
+public class UserStats {
+    long totalScore;
+    long cardCount;
+    // Correct attempts in a row, the current ones and the longest so far
+    int currentStreak;
+    int longestStreak;
+    // The badges the user already has, see BadgeType#mask
+    long badges;
+
+    public boolean hasBadge(final BadgeType badgeType) {
+        return (badges & badgeType.mask()) != 0;
+    }
+}
@@ -0,0 +1,62 @@
+package microservices.book.gamification.challenge;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.assertj.core.api.BDDAssertions.thenThrownBy;
+
+public class ChallengeSolvedEventBinaryConverterTest {
+
+    private final ChallengeSolvedEventBinaryConverter converter =
+            new ChallengeSolvedEventBinaryConverter();
+
+    @Test
+    public void binaryMessageIsConvertedTest() {
+        // given
+        var event = new ChallengeSolvedEvent(4815162342L, true, 42, 37, 1234L, "john_doe");
+        Message<byte[]> message = message(ChallengeSolvedEventBinaryConverter.encode(event),
+                ChallengeSolvedEventBinaryConverter.CONTENT_TYPE);
+
+        // when
+        Object converted = converter.fromMessage(message, ChallengeSolvedEvent.class);
+
+        // then
+        then(converted).isEqualTo(event);
+    }
+
+    @Test
+    public void jsonMessageIsLeftToOtherConvertersTest() {
+        // given
+        Message<byte[]> message = message("{\"attemptId\":1}".getBytes(StandardCharsets.UTF_8),
+                "application/json");
+
+        // then
+        then(converter.fromMessage(message, ChallengeSolvedEvent.class)).isNull();
+    }
+
+    @Test
+    public void truncatedMessageTest() {
+        // given
+        var event = new ChallengeSolvedEvent(1L, false, 10, 10, 2L, null);
+        byte[] body = ChallengeSolvedEventBinaryConverter.encode(event);
+        Message<byte[]> message = message(java.util.Arrays.copyOf(body, body.length - 1),
+                ChallengeSolvedEventBinaryConverter.CONTENT_TYPE);
+
+        // then
+        thenThrownBy(() -> converter.fromMessage(message, ChallengeSolvedEvent.class))
+                .isInstanceOf(MessageConversionException.class);
+    }
+
+    private static Message<byte[]> message(final byte[] body, final String contentType) {
+        return MessageBuilder.withPayload(body)
+                .setHeader(MessageHeaders.CONTENT_TYPE, contentType)
+                .build();
+    }
+}
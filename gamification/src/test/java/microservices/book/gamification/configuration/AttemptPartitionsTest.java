@@ -0,0 +1,47 @@
+package microservices.book.gamification.configuration;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.assertj.core.api.BDDAssertions.thenThrownBy;
+
+public class AttemptPartitionsTest {
+
+    @Test
+    public void ownsAllPartitionsByDefaultTest() {
+        // when
+        AttemptPartitions partitions = new AttemptPartitions("gamification.queue", 3, "", false);
+
+        // then
+        then(partitions.getOwnedQueues()).containsExactly(
+                "gamification.queue.0", "gamification.queue.1", "gamification.queue.2");
+        then(partitions.bindingKey(1)).isEqualTo("attempt.*.1");
+    }
+
+    @Test
+    public void ownsTheConfiguredPartitionsTest() {
+        // when
+        AttemptPartitions partitions = new AttemptPartitions("gamification.queue", 4, "3, 1", false);
+
+        // then
+        then(partitions.getOwnedQueues()).containsExactly(
+                "gamification.queue.3", "gamification.queue.1");
+    }
+
+    @Test
+    public void consumesTheLegacyQueueDuringTheMigrationTest() {
+        // when
+        AttemptPartitions partitions = new AttemptPartitions("gamification.queue", 2, "1", true);
+
+        // then
+        then(partitions.getOwnedQueues()).containsExactly(
+                "gamification.queue.1", "gamification.queue");
+        then(partitions.getLegacyRoutingKey()).isEqualTo("attempt.correct");
+    }
+
+    @Test
+    public void unknownPartitionIsRejectedTest() {
+        thenThrownBy(() -> new AttemptPartitions("gamification.queue", 2, "0,2", false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
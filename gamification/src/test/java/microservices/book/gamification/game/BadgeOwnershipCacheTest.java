@@ -0,0 +1,73 @@
+package microservices.book.gamification.game;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import microservices.book.gamification.game.domain.BadgeCard;
+import microservices.book.gamification.game.domain.BadgeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class BadgeOwnershipCacheTest {
+
+    private BadgeOwnershipCache badgeOwnershipCache;
+    private MeterRegistry meterRegistry;
+
+    @Mock
+    private BadgeRepository badgeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        badgeOwnershipCache = new BadgeOwnershipCache(badgeRepository, meterRegistry, 100);
+    }
+
+    @Test
+    public void loadsOnceAndCountsHitsAndMissesTest() {
+        // given
+        given(badgeRepository.findByUserIdOrderByBadgeTimestampDesc(1L))
+                .willReturn(List.of(new BadgeCard(1L, BadgeType.FIRST_WON)));
+
+        // when
+        long first = badgeOwnershipCache.badgeMaskOf(1L);
+        long second = badgeOwnershipCache.badgeMaskOf(1L);
+
+        // then
+        then(first).isEqualTo(BadgeType.FIRST_WON.mask()).isEqualTo(second);
+        verify(badgeRepository).findByUserIdOrderByBadgeTimestampDesc(1L);
+        then(gets("hit")).isEqualTo(1);
+        then(gets("miss")).isEqualTo(1);
+    }
+
+    @Test
+    public void badgesWonAreAddedToCachedUsersTest() {
+        // given
+        given(badgeRepository.findByUserIdOrderByBadgeTimestampDesc(1L))
+                .willReturn(List.of(new BadgeCard(1L, BadgeType.FIRST_WON)));
+        badgeOwnershipCache.badgeMaskOf(1L);
+
+        // when - there is no transaction, so it's updated straight away
+        badgeOwnershipCache.badgesWon(1L, BadgeType.BRONZE.mask());
+
+        // then - no need to query again
+        then(badgeOwnershipCache.badgeMaskOf(1L))
+                .isEqualTo(BadgeType.FIRST_WON.mask() | BadgeType.BRONZE.mask());
+        verify(badgeRepository).findByUserIdOrderByBadgeTimestampDesc(1L);
+    }
+
+    private double gets(final String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", "badge-ownership")
+                .tag("result", result)
+                .functionCounter().count();
+    }
+}
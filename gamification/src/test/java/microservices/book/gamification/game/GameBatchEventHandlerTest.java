@@ -0,0 +1,106 @@
+package microservices.book.gamification.game;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import microservices.book.gamification.challenge.ChallengeSolvedEvent;
+import microservices.book.gamification.challenge.ChallengeSolvedEventBinaryConverter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class GameBatchEventHandlerTest {
+
+    private GameBatchEventHandler handler;
+    private ObjectMapper objectMapper;
+
+    @Mock
+    private GameService gameService;
+
+    @BeforeEach
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        handler = new GameBatchEventHandler(gameService, objectMapper,
+                new UserPartitionedExecutor(new SimpleMeterRegistry(), 2));
+    }
+
+    @Test
+    public void malformedMessageIsDiscardedTest() throws Exception {
+        // given
+        var event = new ChallengeSolvedEvent(10L, true, 20, 70, 1L, "john");
+
+        // when
+        handler.handleMultiplicationSolvedBatch(List.of(
+                toMessage(objectMapper.writeValueAsBytes(event)),
+                toMessage("{not json".getBytes())));
+
+        // then - the rest of the batch is processed
+        verify(gameService).newAttempts(List.of(event));
+    }
+
+    @Test
+    public void failedBatchIsProcessedOneByOneTest() throws Exception {
+        // given
+        var poison = new ChallengeSolvedEvent(10L, true, 20, 70, 1L, "john");
+        var event = new ChallengeSolvedEvent(11L, true, 30, 40, 2L, "peter");
+        given(gameService.newAttempts(any()))
+                .willThrow(new IllegalStateException("poison"));
+        given(gameService.newAttemptForUser(poison))
+                .willThrow(new IllegalStateException("poison"));
+
+        // when
+        handler.handleMultiplicationSolvedBatch(List.of(
+                toMessage(objectMapper.writeValueAsBytes(poison)),
+                toMessage(objectMapper.writeValueAsBytes(event))));
+
+        // then - the good event is still processed
+        verify(gameService).newAttemptForUser(event);
+    }
+
+    @Test
+    public void batchIsSplitPerWorkerTest() throws Exception {
+        // given - users 1 and 3 share a worker, user 2 has the other one
+        var first = new ChallengeSolvedEvent(10L, true, 20, 70, 1L, "john");
+        var second = new ChallengeSolvedEvent(11L, true, 30, 40, 2L, "peter");
+        var third = new ChallengeSolvedEvent(12L, true, 50, 60, 3L, "mary");
+
+        // when
+        handler.handleMultiplicationSolvedBatch(List.of(
+                toMessage(objectMapper.writeValueAsBytes(first)),
+                toMessage(objectMapper.writeValueAsBytes(second)),
+                toMessage(objectMapper.writeValueAsBytes(third))));
+
+        // then
+        verify(gameService).newAttempts(List.of(first, third));
+        verify(gameService).newAttempts(List.of(second));
+    }
+
+    @Test
+    public void binaryMessageIsReadTest() {
+        // given
+        var event = new ChallengeSolvedEvent(10L, true, 20, 70, 1L, "john");
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(ChallengeSolvedEventBinaryConverter.CONTENT_TYPE);
+
+        // when
+        handler.handleMultiplicationSolvedBatch(List.of(
+                new Message(ChallengeSolvedEventBinaryConverter.encode(event), properties)));
+
+        // then
+        verify(gameService).newAttempts(List.of(event));
+    }
+
+    private static Message toMessage(final byte[] body) {
+        return new Message(body, new MessageProperties());
+    }
+}
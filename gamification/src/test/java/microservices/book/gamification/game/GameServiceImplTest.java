@@ -14,8 +14,12 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class)
 public class GameServiceImplTest {
@@ -28,6 +32,18 @@ public class GameServiceImplTest {
     @Mock
     private BadgeRepository badgeRepository;
 
+    @Mock
+    private UserScoreRepository userScoreRepository;
+
+    @Mock
+    private InMemoryLeaderBoard leaderBoard;
+
+    @Mock
+    private BadgeOwnershipCache badgeOwnershipCache;
+
+    @Mock
+    private ProcessedAttempts processedAttempts;
+
     @Mock
     private BadgeProcessor badgeProcessor;
 
@@ -35,6 +51,10 @@ public class GameServiceImplTest {
     public void setUp() {
         gameService = new GameServiceImpl(scoreRepository,
                 badgeRepository,
+                userScoreRepository,
+                leaderBoard,
+                badgeOwnershipCache,
+                processedAttempts,
                 List.of(badgeProcessor));
     }
 
@@ -44,14 +64,15 @@ public class GameServiceImplTest {
         long userId = 1L, attemptId = 10L;
         var attempt = new ChallengeSolvedEvent(attemptId, true, 20, 70, userId, "john");
         ScoreCard scoreCard = new ScoreCard(userId, attemptId);
-        given(scoreRepository.getTotalScoreForUser(userId))
-                .willReturn(Optional.of(10));
-        given(scoreRepository.findByUserIdOrderByScoreTimestampDesc(userId))
-                .willReturn(List.of(scoreCard));
-        given(badgeRepository.findByUserIdOrderByBadgeTimestampDesc(userId))
-                .willReturn(List.of(new BadgeCard(userId, BadgeType.FIRST_WON)));
+        given(userScoreRepository.findByUserId(userId))
+                .willReturn(Optional.empty());
+        given(userScoreRepository.save(any()))
+                .will(returnsFirstArg());
+        given(badgeOwnershipCache.badgeMaskOf(userId))
+                .willReturn(BadgeType.FIRST_WON.mask());
         given(badgeProcessor.badgeType()).willReturn(BadgeType.LUCKY_NUMBER);
-        given(badgeProcessor.processForOptionalBadge(10, List.of(scoreCard), attempt))
+        given(badgeProcessor.processForOptionalBadge(
+                new UserStats(10, 1, 1, 1, BadgeType.FIRST_WON.mask()), attempt))
                 .willReturn(Optional.of(BadgeType.LUCKY_NUMBER));
 
         // when
@@ -62,8 +83,30 @@ public class GameServiceImplTest {
                 new GameResult(10,
                         List.of(BadgeType.LUCKY_NUMBER)));
         verify(scoreRepository).save(scoreCard);
+        verify(userScoreRepository).save(argThat(userScore ->
+                userScore.getUserId() == userId &&
+                        userScore.getTotalScore() == 10 &&
+                        userScore.getCardCount() == 1));
         verify(badgeRepository).saveAll(
                 List.of(new BadgeCard(userId, BadgeType.LUCKY_NUMBER)));
+        verify(badgeOwnershipCache).badgesWon(userId, BadgeType.LUCKY_NUMBER.mask());
+        verify(leaderBoard).userScored(userId, 10,
+                List.of(BadgeType.LUCKY_NUMBER));
+        verify(processedAttempts).add(attemptId);
+    }
+
+    @Test
+    public void processDuplicateAttemptTest() {
+        // given
+        given(processedAttempts.contains(10L)).willReturn(true);
+
+        // when
+        GameResult gameResult = gameService.newAttemptForUser(
+                new ChallengeSolvedEvent(10L, true, 20, 70, 1L, "john"));
+
+        // then - shouldn't score twice
+        then(gameResult).isEqualTo(new GameResult(0, List.of()));
+        verifyNoInteractions(scoreRepository, userScoreRepository, leaderBoard);
     }
 
     @Test
@@ -74,6 +117,82 @@ public class GameServiceImplTest {
 
         // then - shouldn't score anything
         then(gameResult).isEqualTo(new GameResult(0, List.of()));
+        verifyNoInteractions(leaderBoard);
+    }
+
+    @Test
+    public void wrongAttemptBreaksStreakTest() {
+        // given
+        given(userScoreRepository.findByUserId(1L))
+                .willReturn(Optional.of(new UserScore(1L, 30, 3, 0, 3, 3)));
+
+        // when
+        gameService.newAttemptForUser(
+                new ChallengeSolvedEvent(10L, false, 10, 10, 1L, "john"));
+
+        // then - the longest streak is kept
+        verify(userScoreRepository).save(argThat(userScore ->
+                userScore.getCurrentStreak() == 0 &&
+                        userScore.getLongestStreak() == 3 &&
+                        userScore.getTotalScore() == 30));
+    }
+
+    @Test
+    public void processBatchOfAttemptsTest() {
+        // given - two correct attempts of the same user and a wrong one
+        var first = new ChallengeSolvedEvent(10L, true, 20, 70, 1L, "john");
+        var second = new ChallengeSolvedEvent(11L, true, 30, 40, 1L, "john");
+        var wrong = new ChallengeSolvedEvent(12L, false, 10, 10, 2L, "peter");
+        given(userScoreRepository.findByUserId(1L))
+                .willReturn(Optional.empty());
+        given(badgeProcessor.badgeType()).willReturn(BadgeType.LUCKY_NUMBER);
+        given(badgeProcessor.processForOptionalBadge(
+                new UserStats(10, 1, 1, 1, 0), first))
+                .willReturn(Optional.of(BadgeType.LUCKY_NUMBER));
+
+        // when
+        List<GameResult> gameResults = gameService.newAttempts(
+                List.of(first, second, wrong));
+
+        // then - the user is read once and the badge is given only once
+        then(gameResults).containsExactly(
+                new GameResult(10, List.of(BadgeType.LUCKY_NUMBER)),
+                new GameResult(10, List.of()),
+                new GameResult(0, List.of()));
+        verify(userScoreRepository).findByUserId(1L);
+        verify(scoreRepository).saveAll(List.of(
+                new ScoreCard(1L, 10L), new ScoreCard(1L, 11L)));
+        verify(userScoreRepository).saveAll(argThat(userScores ->
+                userScores.iterator().next().getTotalScore() == 20 &&
+                        userScores.iterator().next().getCardCount() == 2 &&
+                        userScores.iterator().next().getCurrentStreak() == 2));
+        verify(badgeRepository).saveAll(
+                List.of(new BadgeCard(1L, BadgeType.LUCKY_NUMBER)));
+        verify(badgeOwnershipCache).badgesWon(1L, BadgeType.LUCKY_NUMBER.mask());
+        verify(leaderBoard).userScored(1L, 20,
+                List.of(BadgeType.LUCKY_NUMBER));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void processBatchWithDuplicatesTest() {
+        // given - an attempt already processed and another one repeated in the batch
+        var processed = new ChallengeSolvedEvent(9L, true, 20, 70, 1L, "john");
+        var attempt = new ChallengeSolvedEvent(10L, true, 30, 40, 1L, "john");
+        given(processedAttempts.contains(9L)).willReturn(true);
+        given(userScoreRepository.findByUserId(1L))
+                .willReturn(Optional.empty());
+        given(badgeProcessor.badgeType()).willReturn(BadgeType.LUCKY_NUMBER);
+
+        // when
+        List<GameResult> gameResults = gameService.newAttempts(
+                List.of(processed, attempt, attempt));
+
+        // then - only one card is stored
+        then(gameResults).containsExactly(
+                new GameResult(0, List.of()),
+                new GameResult(10, List.of()),
+                new GameResult(0, List.of()));
+        verify(scoreRepository).saveAll(List.of(new ScoreCard(1L, 10L)));
+        verify(processedAttempts).add(10L);
+    }
+}
@@ -0,0 +1,166 @@
+package microservices.book.gamification.game;
+
+import microservices.book.gamification.game.domain.BadgeCard;
+import microservices.book.gamification.game.domain.BadgeType;
+import microservices.book.gamification.game.domain.LeaderBoardRow;
+import microservices.book.gamification.game.domain.UserScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+public class InMemoryLeaderBoardTest {
+
+    private InMemoryLeaderBoard leaderBoard;
+
+    @Mock
+    private UserScoreRepository userScoreRepository;
+
+    @Mock
+    private BadgeRepository badgeRepository;
+
+    @BeforeEach
+    public void setUp() {
+        leaderBoard = new InMemoryLeaderBoard(userScoreRepository, badgeRepository, 2);
+    }
+
+    @Test
+    public void rebuildTest() {
+        // given
+        given(userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, 2)))
+                .willReturn(List.of(new UserScore(1L, 50, 0, 0),
+                        new UserScore(2L, 30, 0, 0)));
+        given(badgeRepository.findByUserIdsGroupedByUser(Set.of(1L, 2L)))
+                .willReturn(Map.of(1L, List.of(new BadgeCard(1L, BadgeType.BRONZE))));
+
+        // when
+        leaderBoard.rebuild();
+
+        // then
+        then(leaderBoard.isReady()).isTrue();
+        then(leaderBoard.getTopRows()).containsExactly(
+                new LeaderBoardRow(1L, 50L, List.of("Bronze")),
+                new LeaderBoardRow(2L, 30L, List.of()));
+    }
+
+    @Test
+    public void userScoredEntersTopTest() {
+        // given
+        given(userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, 2)))
+                .willReturn(List.of(new UserScore(1L, 50, 0, 0),
+                        new UserScore(2L, 30, 0, 0)));
+        leaderBoard.rebuild();
+        given(badgeRepository.findByUserIdOrderByBadgeTimestampDesc(3L))
+                .willReturn(List.of(new BadgeCard(3L, BadgeType.FIRST_WON)));
+
+        // when - user 3 gets over user 2
+        leaderBoard.userScored(3L, 35, List.of());
+
+        // then
+        then(leaderBoard.getTopRows()).containsExactly(
+                new LeaderBoardRow(1L, 50L, List.of()),
+                new LeaderBoardRow(3L, 35L, List.of("First time")));
+    }
+
+    @Test
+    public void userScoredInTopAddsNewBadgesTest() {
+        // given
+        given(userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, 2)))
+                .willReturn(List.of(new UserScore(1L, 50, 0, 0),
+                        new UserScore(2L, 30, 0, 0)));
+        given(badgeRepository.findByUserIdsGroupedByUser(Set.of(1L, 2L)))
+                .willReturn(Map.of(2L, List.of(new BadgeCard(2L, BadgeType.FIRST_WON))));
+        leaderBoard.rebuild();
+        clearInvocations(badgeRepository);
+
+        // when
+        leaderBoard.userScored(2L, 60, List.of(BadgeType.BRONZE));
+
+        // then - no need to query the badges again
+        then(leaderBoard.getTopRows()).containsExactly(
+                new LeaderBoardRow(2L, 60L, List.of("Bronze", "First time")),
+                new LeaderBoardRow(1L, 50L, List.of()));
+        verifyNoInteractions(badgeRepository);
+    }
+
+    @Test
+    public void userScoredOutsideTopTest() {
+        // given
+        given(userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, 2)))
+                .willReturn(List.of(new UserScore(1L, 50, 0, 0),
+                        new UserScore(2L, 30, 0, 0)));
+        leaderBoard.rebuild();
+        List<LeaderBoardRow> before = leaderBoard.getTopRows();
+
+        // when
+        leaderBoard.userScored(3L, 10, List.of(BadgeType.FIRST_WON));
+
+        // then - the snapshot is the same
+        then(leaderBoard.getTopRows()).isSameAs(before);
+    }
+
+    @Test
+    public void refreshLoadsScoresOfOtherInstancesTest() {
+        // given
+        given(userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, 2)))
+                .willReturn(List.of(new UserScore(1L, 50, 0, 0),
+                        new UserScore(2L, 30, 0, 0)));
+        leaderBoard.rebuild();
+        given(userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, 2)))
+                .willReturn(List.of(new UserScore(3L, 70, 0, 0),
+                        new UserScore(1L, 50, 0, 0)));
+
+        // when - user 3 scored in another instance
+        leaderBoard.refresh();
+
+        // then
+        then(leaderBoard.getTopRows()).containsExactly(
+                new LeaderBoardRow(3L, 70L, List.of()),
+                new LeaderBoardRow(1L, 50L, List.of()));
+    }
+
+    @Test
+    public void userScoredAfterRefreshDoesNotRepeatBadgesTest() {
+        // given - the refresh already loaded the new badge
+        given(userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, 2)))
+                .willReturn(List.of(new UserScore(1L, 60, 0, 0)));
+        given(badgeRepository.findByUserIdsGroupedByUser(Set.of(1L)))
+                .willReturn(Map.of(1L, List.of(new BadgeCard(1L, BadgeType.BRONZE))));
+        leaderBoard.refresh();
+
+        // when
+        leaderBoard.userScored(1L, 60, List.of(BadgeType.BRONZE));
+
+        // then
+        then(leaderBoard.getTopRows()).containsExactly(
+                new LeaderBoardRow(1L, 60L, List.of("Bronze")));
+    }
+
+    @Test
+    public void failedRefreshFallsBackToDatabaseTest() {
+        // given
+        given(userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, 2)))
+                .willReturn(List.of(new UserScore(1L, 50, 0, 0)));
+        leaderBoard.rebuild();
+        given(userScoreRepository.findAllByOrderByTotalScoreDescUserIdAsc(PageRequest.of(0, 2)))
+                .willThrow(new IllegalStateException("Database down"));
+
+        // when
+        leaderBoard.refresh();
+
+        // then
+        then(leaderBoard.isReady()).isFalse();
+    }
+}
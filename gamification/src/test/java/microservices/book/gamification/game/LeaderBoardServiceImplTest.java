@@ -0,0 +1,124 @@
+package microservices.book.gamification.game;
+
+import jakarta.persistence.EntityManagerFactory;
+import microservices.book.gamification.game.domain.BadgeCard;
+import microservices.book.gamification.game.domain.BadgeType;
+import microservices.book.gamification.game.domain.LeaderBoardRow;
+import microservices.book.gamification.game.domain.UserScore;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/*
+ * Runs against the embedded database to count the statements that every
+ * leader board request issues, using the Hibernate statistics.
+ */
+@DataJpaTest(properties = {
+        "spring.cloud.consul.config.fail-fast=false",
+        "spring.config.on-not-found=ignore",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+public class LeaderBoardServiceImplTest {
+
+    private LeaderBoardServiceImpl leaderBoardService;
+    private InMemoryLeaderBoard inMemoryLeaderBoard;
+
+    @Autowired
+    private UserScoreRepository userScoreRepository;
+
+    @Autowired
+    private BadgeRepository badgeRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        inMemoryLeaderBoard = new InMemoryLeaderBoard(userScoreRepository,
+                badgeRepository, 10);
+        leaderBoardService = new LeaderBoardServiceImpl(userScoreRepository,
+                badgeRepository, inMemoryLeaderBoard);
+        for (long userId = 1; userId <= 5; userId++) {
+            entityManager.persist(new UserScore(userId, userId * 10, userId, 0));
+            entityManager.persist(new BadgeCard(userId, BadgeType.FIRST_WON));
+        }
+        entityManager.persist(new BadgeCard(5L, BadgeType.BRONZE));
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    public void leaderBoardFromDatabaseStatementsTest() {
+        // when - the in-memory board is not loaded
+        List<LeaderBoardRow> rows = leaderBoardService.getCurrentLeaderBoard();
+
+        // then - one query for the scores and one for all the badges
+        then(rows).hasSize(5);
+        then(rows.get(0).getUserId()).isEqualTo(5L);
+        then(rows.get(0).getBadges()).containsExactlyInAnyOrder("Bronze", "First time");
+        then(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void leaderBoardFromMemoryStatementsTest() {
+        // given
+        inMemoryLeaderBoard.rebuild();
+        List<LeaderBoardRow> rebuilt = inMemoryLeaderBoard.getTopRows();
+        statistics.clear();
+
+        // when
+        List<LeaderBoardRow> rows = leaderBoardService.getCurrentLeaderBoard();
+
+        // then - no queries at all
+        then(rows).isEqualTo(rebuilt).hasSize(5);
+        then(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    public void pageFromDatabaseTest() {
+        // when - the page is beyond the in-memory board
+        List<LeaderBoardRow> rows = leaderBoardService.getLeaderBoard(1, 2);
+
+        // then - the limit is applied by the database
+        then(rows).extracting(LeaderBoardRow::getUserId).containsExactly(4L, 3L);
+        then(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void pageAfterCursorFromDatabaseTest() {
+        // when
+        List<LeaderBoardRow> rows = leaderBoardService.getLeaderBoardAfter(40, 4L, 2);
+
+        // then
+        then(rows).extracting(LeaderBoardRow::getUserId).containsExactly(3L, 2L);
+        then(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void pageAfterCursorFromMemoryTest() {
+        // given
+        inMemoryLeaderBoard.rebuild();
+        statistics.clear();
+
+        // when
+        List<LeaderBoardRow> rows = leaderBoardService.getLeaderBoardAfter(40, 4L, 2);
+
+        // then
+        then(rows).extracting(LeaderBoardRow::getUserId).containsExactly(3L, 2L);
+        then(statistics.getPrepareStatementCount()).isZero();
+    }
+}
@@ -0,0 +1,154 @@
+package microservices.book.gamification.game;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import microservices.book.gamification.game.domain.LeaderBoardRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+public class LeaderBoardStreamTest {
+
+    private LeaderBoardStream stream;
+
+    @Mock
+    private InMemoryLeaderBoard leaderBoard;
+
+    @BeforeEach
+    public void setUp() {
+        // The events are written right away, in the thread that queues them
+        stream = new LeaderBoardStream(leaderBoard, new ObjectMapper(),
+                new SimpleMeterRegistry(), Duration.ofMinutes(1), 2, Runnable::run);
+        given(leaderBoard.isReady()).willReturn(true);
+    }
+
+    @Test
+    public void subscribeSendsLastBroadcastBoardTest() {
+        // given
+        given(leaderBoard.getTopRows()).willReturn(List.of(new LeaderBoardRow(1L, 50L)));
+        stream.broadcast();
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        // when
+        stream.register(emitter);
+
+        // then
+        then(emitter.events).containsExactly(
+                "event:leaders\ndata:[{\"userId\":1,\"totalScore\":50,\"badges\":[]}]\n\n");
+    }
+
+    @Test
+    public void broadcastSendsOnlyChangedPositionsTest() {
+        // given
+        given(leaderBoard.getTopRows()).willReturn(List.of(
+                new LeaderBoardRow(1L, 50L), new LeaderBoardRow(2L, 30L)));
+        stream.broadcast();
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.register(emitter);
+
+        // when - user 3 gets over user 2
+        given(leaderBoard.getTopRows()).willReturn(List.of(
+                new LeaderBoardRow(1L, 50L), new LeaderBoardRow(3L, 35L)));
+        stream.broadcast();
+
+        // then
+        then(emitter.events).hasSize(2);
+        then(emitter.events.get(1)).isEqualTo("event:diff\ndata:{\"size\":2,\"changes\":" +
+                "[{\"position\":1,\"row\":{\"userId\":3,\"totalScore\":35,\"badges\":[]}}]}\n\n");
+    }
+
+    @Test
+    public void broadcastCoalescesChangesTest() {
+        // given
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.register(emitter);
+
+        // when - the user scored twice since the last check, and then the board didn't change
+        given(leaderBoard.getTopRows()).willReturn(List.of(new LeaderBoardRow(1L, 20L)));
+        stream.broadcast();
+        stream.broadcast();
+
+        // then - a single diff with the latest version
+        then(emitter.events).hasSize(2);
+        then(emitter.events.get(1)).contains("\"totalScore\":20");
+    }
+
+    @Test
+    public void broadcastDropsFailedSubscribersTest() {
+        // given
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.register(emitter);
+        emitter.failing = true;
+        given(leaderBoard.getTopRows()).willReturn(List.of(new LeaderBoardRow(1L, 10L)));
+        stream.broadcast();
+        emitter.failing = false;
+
+        // when
+        given(leaderBoard.getTopRows()).willReturn(List.of(new LeaderBoardRow(1L, 20L)));
+        stream.broadcast();
+
+        // then - only the snapshot, nothing after the failure
+        then(emitter.events).hasSize(1);
+    }
+
+    @Test
+    public void slowSubscriberIsDroppedWithoutBlockingOthersTest() {
+        // given - the writes of the first subscriber are stuck
+        List<Runnable> stuck = new ArrayList<>();
+        stream = new LeaderBoardStream(leaderBoard, new ObjectMapper(),
+                new SimpleMeterRegistry(), Duration.ofMinutes(1), 2, stuck::add);
+        RecordingEmitter slow = new RecordingEmitter();
+        stream.register(slow);
+
+        // when - more diffs than the ones that can wait
+        for (long score = 10; score <= 30; score += 10) {
+            given(leaderBoard.getTopRows()).willReturn(List.of(new LeaderBoardRow(1L, score)));
+            stream.broadcast();
+        }
+        RecordingEmitter next = new RecordingEmitter();
+        stream.register(next);
+        stuck.forEach(Runnable::run);
+
+        // then - the slow one is completed without the pending events
+        then(slow.events).isEmpty();
+        then(slow.completed).isTrue();
+        then(next.events).containsExactly(
+                "event:leaders\ndata:[{\"userId\":1,\"totalScore\":30,\"badges\":[]}]\n\n");
+    }
+
+    // Keeps the events as text instead of writing them to a response
+    private static class RecordingEmitter extends SseEmitter {
+
+        final List<String> events = new ArrayList<>();
+        boolean failing;
+        boolean completed;
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        @Override
+        public void send(final SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            events.add(builder.build().stream()
+                    .map(part -> part.getData().toString())
+                    .collect(Collectors.joining()));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package microservices.book.gamification.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class ProcessedAttemptsTest {
+
+    @Test
+    public void oldestAttemptIsForgottenTest() {
+        // given
+        ProcessedAttempts processedAttempts = new ProcessedAttempts(new SimpleMeterRegistry(), 2);
+
+        // when
+        processedAttempts.add(1L);
+        processedAttempts.add(2L);
+        processedAttempts.add(2L);
+        processedAttempts.add(3L);
+
+        // then
+        then(processedAttempts.contains(1L)).isFalse();
+        then(processedAttempts.contains(2L)).isTrue();
+        then(processedAttempts.contains(3L)).isTrue();
+    }
+
+    @Test
+    public void isDuplicateTest() {
+        // given - the names as the H2 dialect extracts them
+        var duplicate = violation("PUBLIC.UK_SCORE_CARD_ATTEMPT_INDEX_7");
+        var other = violation("PUBLIC.PRIMARY_KEY_5");
+        var withoutName = new DataIntegrityViolationException("could not execute statement",
+                new SQLIntegrityConstraintViolationException("uk_score_card_attempt"));
+
+        // then
+        then(ProcessedAttempts.isDuplicate(duplicate)).isTrue();
+        then(ProcessedAttempts.isDuplicate(other)).isFalse();
+        then(ProcessedAttempts.isDuplicate(withoutName)).isFalse();
+        then(ProcessedAttempts.isUniqueAttempt("\"public\".\"uk_score_card_attempt\"")).isTrue();
+    }
+
+    private static DataIntegrityViolationException violation(final String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement",
+                        new SQLIntegrityConstraintViolationException("Unique index or primary key violation"),
+                        constraintName));
+    }
+}
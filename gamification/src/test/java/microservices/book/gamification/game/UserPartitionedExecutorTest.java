@@ -0,0 +1,81 @@
+package microservices.book.gamification.game;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class UserPartitionedExecutorTest {
+
+    private UserPartitionedExecutor executor;
+
+    @BeforeEach
+    public void setUp() {
+        executor = new UserPartitionedExecutor(new SimpleMeterRegistry(), 2);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    public void sameUserIsProcessedInOrderTest() {
+        // given
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+
+        // when
+        CompletableFuture.allOf(IntStream.range(0, 100)
+                .mapToObj(i -> executor.submit(1L, () -> processed.add(i)))
+                .toArray(CompletableFuture[]::new)).join();
+
+        // then
+        then(processed).isEqualTo(IntStream.range(0, 100).boxed().toList());
+    }
+
+    @Test
+    public void differentUsersAreProcessedInParallelTest() throws Exception {
+        // given - user 1 is blocked
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> blocked = executor.submit(1L, () -> await(release));
+
+        // when
+        CompletableFuture<String> other = executor.submit(2L, () -> "done");
+
+        // then - user 2 doesn't wait for user 1
+        then(other.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        then(blocked).isNotDone();
+        release.countDown();
+        then(blocked.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void failedTaskCompletesExceptionallyTest() {
+        // when
+        CompletableFuture<Object> result = executor.submit(1L, () -> {
+            throw new IllegalStateException("poison");
+        });
+
+        // then
+        then(result).failsWithin(5, TimeUnit.SECONDS)
+                .withThrowableOfType(Exception.class)
+                .withRootCauseInstanceOf(IllegalStateException.class);
+    }
+
+    private static boolean await(final CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package microservices.book.gamification.game;
+
+import jakarta.persistence.EntityManager;
+import microservices.book.gamification.game.domain.UserScore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class UserScoreReconcilerTest {
+
+    private UserScoreReconciler reconciler;
+
+    @Mock
+    private ScoreRepository scoreRepository;
+
+    @Mock
+    private UserScoreRepository userScoreRepository;
+
+    @Mock
+    private InMemoryLeaderBoard leaderBoard;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void setUp() {
+        reconciler = new UserScoreReconciler(scoreRepository, userScoreRepository,
+                leaderBoard, new TransactionTemplate(transactionManager), entityManager, 100);
+    }
+
+    @Test
+    public void cardScoredWhileReconcilingIsNotLostTest() {
+        // given - the aggregate drifted, and a new card is scored after the
+        // page is aggregated but before the reconciler gets the lock
+        UserScore row = new UserScore(1L, 10, 1, 100);
+        AtomicBoolean cardCommitted = new AtomicBoolean();
+        given(scoreRepository.aggregateUserScoresAfter(anyLong(), any()))
+                .willReturn(List.of(new UserScore(1L, 20, 2, 200)));
+        given(userScoreRepository.findAllById(List.of(1L))).willReturn(List.of(row));
+        given(userScoreRepository.findByUserId(1L)).willAnswer(invocation -> {
+            cardCommitted.set(true);
+            row.setTotalScore(30);
+            row.setCardCount(3);
+            row.setLastScoreTimestamp(300);
+            return Optional.of(row);
+        });
+        given(scoreRepository.aggregateUserScore(1L)).willAnswer(invocation ->
+                Optional.of(cardCommitted.get() ? new UserScore(1L, 30, 3, 300)
+                        : new UserScore(1L, 20, 2, 200)));
+
+        // when
+        int fixed = reconciler.reconcile();
+
+        // then
+        then(fixed).isEqualTo(1);
+        then(row.getTotalScore()).isEqualTo(30);
+        then(row.getCardCount()).isEqualTo(3);
+        then(row.getLastScoreTimestamp()).isEqualTo(300);
+        verify(leaderBoard).rebuild();
+    }
+
+    @Test
+    public void missingAggregateIsInsertedTest() {
+        // given
+        UserScore fresh = new UserScore(2L, 10, 1, 100);
+        given(scoreRepository.aggregateUserScoresAfter(anyLong(), any()))
+                .willReturn(List.of(fresh));
+        given(userScoreRepository.findAllById(List.of(2L))).willReturn(List.of());
+        given(userScoreRepository.findByUserId(2L)).willReturn(Optional.empty());
+        given(scoreRepository.aggregateUserScore(2L)).willReturn(Optional.of(fresh));
+
+        // when
+        int fixed = reconciler.reconcile();
+
+        // then
+        then(fixed).isEqualTo(1);
+        verify(entityManager).persist(fresh);
+    }
+}
@@ -1,10 +1,10 @@
 package microservices.book.gamification.game.badgeprocessors;
 
 import microservices.book.gamification.game.domain.BadgeType;
+import microservices.book.gamification.game.domain.UserStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -21,14 +21,18 @@ class BronzeBadgeProcessorTest {
     @Test
     public void shouldGiveBadgeIfScoreOverThreshold() {
         Optional<BadgeType> badgeType = badgeProcessor
-                .processForOptionalBadge(60, List.of(), null);
+                .processForOptionalBadge(statsWithScore(60), null);
         assertThat(badgeType).contains(BadgeType.BRONZE);
     }
 
     @Test
     public void shouldNotGiveBadgeIfScoreUnderThreshold() {
         Optional<BadgeType> badgeType = badgeProcessor
-                .processForOptionalBadge(40, List.of(), null);
+                .processForOptionalBadge(statsWithScore(40), null);
         assertThat(badgeType).isEmpty();
     }
+
+    private static UserStats statsWithScore(final long totalScore) {
+        return new UserStats(totalScore, totalScore / 10, 1, 1, 0);
+    }
 }
@@ -1,4 +1,34 @@
 package microservices.book.gamification.game.badgeprocessors;
 
+import microservices.book.gamification.game.domain.BadgeType;
+import microservices.book.gamification.game.domain.UserStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class FirstWonBadgeProcessorTest {
+
+    private FirstWonBadgeProcessor badgeProcessor;
+
+    @BeforeEach
+    public void setUp() {
+        badgeProcessor = new FirstWonBadgeProcessor();
+    }
+
+    @Test
+    public void shouldGiveBadgeIfFirstCard() {
+        Optional<BadgeType> badgeType = badgeProcessor
+                .processForOptionalBadge(new UserStats(10, 1, 1, 1, 0), null);
+        assertThat(badgeType).contains(BadgeType.FIRST_WON);
+    }
+
+    @Test
+    public void shouldNotGiveBadgeIfNotFirstCard() {
+        Optional<BadgeType> badgeType = badgeProcessor
+                .processForOptionalBadge(new UserStats(20, 2, 2, 2, 0), null);
+        assertThat(badgeType).isEmpty();
+    }
 }
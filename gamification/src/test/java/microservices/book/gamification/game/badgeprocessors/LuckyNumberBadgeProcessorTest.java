@@ -2,11 +2,10 @@ package microservices.book.gamification.game.badgeprocessors;
 
 import microservices.book.gamification.challenge.ChallengeSolvedEvent;
 import microservices.book.gamification.game.domain.BadgeType;
-import microservices.book.gamification.game.domain.ScoreCard;
+import microservices.book.gamification.game.domain.UserStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -22,8 +21,7 @@ public class LuckyNumberBadgeProcessorTest {
     // @Test
     // public void shouldGiveBadgeIfLuckyFactor() {
     //     Optional<BadgeType> badgeType = badgeProcessor
-    //             .processForOptionalBadge(10,
-    //                     List.of(new ScoreCard(1L, 1L)),
+    //             .processForOptionalBadge(new UserStats(10, 1, 1, 1, 0),
     //                     new ChallengeSolvedEvent(1L, true, 42, 10, 1L, "John"));
     //     assertThat(badgeType).contains(BadgeType.LUCKY_NUMBER);
     // }
@@ -31,8 +29,7 @@ public class LuckyNumberBadgeProcessorTest {
     @Test
     public void shouldNotGiveBadgeIfNotLuckyFactor() {
         Optional<BadgeType> badgeType = badgeProcessor
-                .processForOptionalBadge(10,
-                        List.of(new ScoreCard(1L, 1L)),
+                .processForOptionalBadge(new UserStats(10, 1, 1, 1, 0),
                         new ChallengeSolvedEvent(1L, true, 43, 10, 1L, "John"));
         assertThat(badgeType).isEmpty();
     }
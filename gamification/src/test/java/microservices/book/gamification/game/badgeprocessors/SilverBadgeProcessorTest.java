@@ -1,10 +1,10 @@
 package microservices.book.gamification.game.badgeprocessors;
 
 import microservices.book.gamification.game.domain.BadgeType;
+import microservices.book.gamification.game.domain.UserStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -21,14 +21,18 @@ public class SilverBadgeProcessorTest {
     @Test
     public void shouldGiveBadgeIfScoreOverThreshold() {
         Optional<BadgeType> badgeType = badgeProcessor
-                .processForOptionalBadge(160, List.of(), null);
+                .processForOptionalBadge(statsWithScore(160), null);
         assertThat(badgeType).contains(BadgeType.SILVER);
     }
 
     @Test
     public void shouldNotGiveBadgeIfScoreUnderThreshold() {
         Optional<BadgeType> badgeType = badgeProcessor
-                .processForOptionalBadge(140, List.of(), null);
+                .processForOptionalBadge(statsWithScore(140), null);
         assertThat(badgeType).isEmpty();
     }
+
+    private static UserStats statsWithScore(final long totalScore) {
+        return new UserStats(totalScore, totalScore / 10, 1, 1, 0);
+    }
 }
@@ -0,0 +1,115 @@
+package microservices.book.gateway.filter;
+
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A copy of a response that can be written to other requests: its status, the
+ * headers that describe the body and the body itself.
+ * When it's kept by the {@link ResponseCache}, it also has an ETag, it's fresh
+ * until freshUntil, and it can still be served while it's revalidated until
+ * staleUntil (both in epoch millis).
+ */
+@Getter
+class CachedResponse {
+
+    // Only the headers about the body are kept, the rest (CORS, cookies,
+    // connection headers) belong to the response of every request
+    private static final List<String> KEPT_HEADERS = List.of(HttpHeaders.CONTENT_TYPE,
+            HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_LANGUAGE, HttpHeaders.LAST_MODIFIED);
+
+    // The gateway adds the CORS headers to every response by itself
+    private static final Set<String> CORS_REQUEST_HEADERS = Set.of(
+            HttpHeaders.ORIGIN.toLowerCase(Locale.ROOT),
+            HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD.toLowerCase(Locale.ROOT),
+            HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS.toLowerCase(Locale.ROOT));
+
+    private final HttpStatusCode status;
+    private final HttpHeaders headers;
+    private final byte[] body;
+    private final String eTag;
+    private final long storedAt;
+    private final long freshUntil;
+    private final long staleUntil;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+
+    CachedResponse(final HttpStatusCode status, final HttpHeaders headers, final byte[] body,
+                   final String eTag, final long storedAt, final long freshUntil, final long staleUntil) {
+        HttpHeaders kept = new HttpHeaders();
+        KEPT_HEADERS.stream()
+                .filter(headers::containsKey)
+                .forEach(name -> kept.put(name, headers.get(name)));
+        this.status = status;
+        this.headers = HttpHeaders.readOnlyHttpHeaders(kept);
+        this.body = body;
+        this.eTag = eTag;
+        this.storedAt = storedAt;
+        this.freshUntil = freshUntil;
+        this.staleUntil = staleUntil;
+    }
+
+    /**
+     * A response that varies by a request header other than the CORS ones
+     * (e.g. Vary: Accept-Encoding), or that is compressed, can't be given to
+     * the other requests of the same URI: they might have asked for another
+     * variant.
+     *
+     * @param headers the headers of the response
+     * @return true if the response can't be cached or shared
+     */
+    static boolean variesByRequest(final HttpHeaders headers) {
+        String encoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+        return (encoding != null && !encoding.equalsIgnoreCase("identity"))
+                || headers.getVary().stream()
+                .map(name -> name.trim().toLowerCase(Locale.ROOT))
+                .anyMatch(name -> !CORS_REQUEST_HEADERS.contains(name));
+    }
+
+    /**
+     * @param status  the status of the response
+     * @param headers the headers of the response
+     * @param body    the whole body
+     * @return a copy of a response that isn't cached, only shared
+     */
+    static CachedResponse of(final HttpStatusCode status, final HttpHeaders headers, final byte[] body) {
+        return new CachedResponse(status, headers, body, null, 0, 0, 0);
+    }
+
+    void writeHeaders(final ServerHttpResponse response) {
+        response.setStatusCode(status);
+        response.getHeaders().putAll(headers);
+    }
+
+    Mono<Void> writeBody(final ServerHttpResponse response) {
+        response.getHeaders().setContentLength(body.length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(body)));
+    }
+
+    boolean isFresh(final long now) {
+        return now < freshUntil;
+    }
+
+    boolean isUsable(final long now) {
+        return now < staleUntil;
+    }
+
+    /**
+     * @return true if the caller has to revalidate it, false if another
+     *         request is already doing it
+     */
+    boolean startRevalidation() {
+        return revalidating.compareAndSet(false, true);
+    }
+
+    void endRevalidation() {
+        revalidating.set(false);
+    }
+}
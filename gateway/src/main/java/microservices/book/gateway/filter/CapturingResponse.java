@@ -0,0 +1,79 @@
+package microservices.book.gateway.filter;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Buffers the whole body of a response before it's written, so it can be kept
+ * or shared. The responses that don't pass the capturable test (checked when
+ * the status and the headers are known), or whose body turns out to be longer
+ * than maxBytes, are written as they come instead.
+ * The handler gets the response and the body, and it's in charge of writing
+ * it, usually to the {@link #getDelegate() delegate}.
+ */
+/*
+ * The capturable test can only check the Content-Length, and the chunked
+ * responses don't have one. That's why the body is buffered up to maxBytes:
+ * once it goes over, what was buffered is written followed by the rest.
+ */
+class CapturingResponse extends ServerHttpResponseDecorator {
+
+    private final Predicate<ServerHttpResponse> capturable;
+    private final long maxBytes;
+    private final BiFunction<CapturingResponse, byte[], Mono<Void>> handler;
+
+    CapturingResponse(final ServerHttpResponse delegate,
+                      final Predicate<ServerHttpResponse> capturable,
+                      final long maxBytes,
+                      final BiFunction<CapturingResponse, byte[], Mono<Void>> handler) {
+        super(delegate);
+        this.capturable = capturable;
+        this.maxBytes = maxBytes;
+        this.handler = handler;
+    }
+
+    @Override
+    public Mono<Void> writeWith(final Publisher<? extends DataBuffer> body) {
+        if (!capturable.test(this)) {
+            return super.writeWith(body);
+        }
+        long[] buffered = {0};
+        // The first chunk is either the whole body or the part that went over maxBytes
+        return Flux.from(body)
+                .<DataBuffer>map(buffer -> buffer)
+                .bufferUntil(buffer -> (buffered[0] += buffer.readableByteCount()) > maxBytes)
+                .switchOnFirst((first, chunks) -> {
+                    if (first.hasValue() && lengthOf(first.get()) > maxBytes) {
+                        return getDelegate().writeWith(chunks.concatMapIterable(chunk -> chunk));
+                    }
+                    List<DataBuffer> whole = first.hasValue() ? first.get() : List.of();
+                    return chunks.then(Mono.defer(() -> handler.apply(this, toBytes(whole))));
+                })
+                .then();
+    }
+
+    private static long lengthOf(final List<DataBuffer> buffers) {
+        return buffers.stream().mapToLong(DataBuffer::readableByteCount).sum();
+    }
+
+    private static byte[] toBytes(final List<DataBuffer> buffers) {
+        byte[] bytes = new byte[(int) lengthOf(buffers)];
+        int position = 0;
+        for (DataBuffer buffer : buffers) {
+            int length = buffer.readableByteCount();
+            buffer.read(bytes, position, length);
+            position += length;
+            DataBufferUtils.release(buffer);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,86 @@
+package microservices.book.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for a route: at most maxConcurrent requests are sent to
+ * the service at the same time, and the rest are rejected straight away with
+ * a 429 and a Retry-After header, instead of waiting in the service until
+ * they time out. E.g.
+ * <pre>
+ * filters:
+ *   - name: ConcurrencyLimit
+ *     args:
+ *       maxConcurrent: 100
+ *       retryAfter: 1s
+ * </pre>
+ * The requests in flight are published in the gateway.concurrency-limit.in-flight
+ * gauge, and the rejected ones in gateway.concurrency-limit.rejected, by route.
+ * The limit is per gateway instance.
+ */
+@Component
+public class ConcurrencyLimitGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ConcurrencyLimitGatewayFilterFactory.Config> {
+
+    private final MeterRegistry meterRegistry;
+
+    public ConcurrencyLimitGatewayFilterFactory(final MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("maxConcurrent", "retryAfter");
+    }
+
+    @Override
+    public GatewayFilter apply(final Config config) {
+        if (config.getMaxConcurrent() < 1) {
+            throw new IllegalArgumentException("The maxConcurrent of the ConcurrencyLimit filter must be at least 1");
+        }
+        String route = config.getRouteId() != null ? config.getRouteId() : "";
+        String retryAfter = String.valueOf(Math.max(1, config.getRetryAfter().toSeconds()));
+        AtomicInteger inFlight = new AtomicInteger();
+        Gauge.builder("gateway.concurrency-limit.in-flight", inFlight, AtomicInteger::get)
+                .description("Requests of the route being served")
+                .tag("route", route)
+                .register(meterRegistry);
+        Counter rejected = Counter.builder("gateway.concurrency-limit.rejected")
+                .description("Requests rejected because the route had too many in flight")
+                .tag("route", route)
+                .register(meterRegistry);
+        return (exchange, chain) -> {
+            if (inFlight.incrementAndGet() > config.getMaxConcurrent()) {
+                inFlight.decrementAndGet();
+                rejected.increment();
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfter);
+                return response.setComplete();
+            }
+            return chain.filter(exchange).doFinally(signal -> inFlight.decrementAndGet());
+        };
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private int maxConcurrent = 100;
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+}
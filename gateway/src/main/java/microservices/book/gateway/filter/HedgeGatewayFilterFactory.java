@@ -0,0 +1,345 @@
+package microservices.book.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedges the slow GET requests of a route: when the service hasn't answered
+ * after the given percentile of the recent latencies of the route, the same
+ * request is sent again (usually to another instance) and the client gets
+ * the first response, while the other request is cancelled. E.g.
+ * <pre>
+ * filters:
+ *   - name: Hedge
+ *     args:
+ *       percentile: 0.95
+ *       minDelay: 10ms
+ *       maxDelay: 500ms
+ *       budget: 0.1
+ * </pre>
+ * The delay is kept between minDelay and maxDelay, and it's maxDelay until
+ * there are latencies to compute it. At most a budget fraction of the
+ * requests are hedged, so a service that is slow for everyone doesn't get
+ * twice the load. The responses are buffered whole before they're written, so
+ * it's meant for routes with small responses.
+ * The latencies of the route are published in the gateway.hedge.latency
+ * metric, and the hedged requests in gateway.hedge.requests, tagged as sent
+ * or won.
+ */
+/*
+ * The hedged request is sent by the gateway to itself, like the revalidations
+ * of the ResponseCache, so it goes through the route and the load balancer
+ * again. It's marked with the X-Gateway-Hedge header so it's neither hedged
+ * again nor collapsed with the first one by the SingleFlight filter. The first
+ * request writes to a detached response, so nothing reaches the client until
+ * one of the two wins.
+ */
+@Slf4j
+@Component
+public class HedgeGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgeGatewayFilterFactory.Config> {
+
+    // The delay is computed again from the latencies at most this often
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // The headers of a connection, not of the request or the response. The
+    // Origin isn't sent either, the CORS headers come from the first request
+    private static final Set<String> NOT_COPIED = Set.of("connection", "keep-alive", "proxy-connection",
+            "transfer-encoding", "te", "trailer", "upgrade", "host", "content-length", "origin");
+
+    private final MeterRegistry meterRegistry;
+    private final WebClient webClient;
+
+    public HedgeGatewayFilterFactory(final MeterRegistry meterRegistry,
+                                     final WebClient.Builder webClientBuilder) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+        this.webClient = webClientBuilder.build();
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("percentile", "minDelay", "maxDelay", "budget");
+    }
+
+    @Override
+    public GatewayFilter apply(final Config config) {
+        if (config.getPercentile() <= 0 || config.getPercentile() >= 1) {
+            throw new IllegalArgumentException("The percentile of the Hedge filter must be between 0 and 1");
+        }
+        RouteHedging hedging = new RouteHedging(config, meterRegistry);
+        // Before the NettyWriteResponseFilter, like the ResponseCache
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            if (request.getMethod() != HttpMethod.GET || Requests.acceptsEventStream(request)
+                    || Requests.isHedge(request) || request.getLocalAddress() == null) {
+                return chain.filter(exchange);
+            }
+            long start = System.nanoTime();
+            hedging.accrue();
+            DetachedResponse detached = new DetachedResponse(exchange.getResponse());
+            Mono<Winner> first = chain.filter(exchange.mutate().response(detached).build())
+                    .then(Mono.fromSupplier(() -> new Winner(false, detached.toBuffered())))
+                    // A cancelled request was at least this slow
+                    .doFinally(signal -> {
+                        if (signal != SignalType.ON_ERROR) {
+                            hedging.record(System.nanoTime() - start);
+                        }
+                    });
+            // A hedge that isn't sent or fails never wins, the first request goes on
+            Mono<Winner> hedge = Mono.delay(Duration.ofNanos(hedging.delayNanos(start)))
+                    .filter(tick -> hedging.trySend())
+                    .flatMap(tick -> send(request))
+                    .map(response -> new Winner(true, response))
+                    .onErrorResume(e -> {
+                        log.debug("Hedged request to {} failed: {}", request.getURI(), e.getMessage());
+                        return Mono.empty();
+                    })
+                    .switchIfEmpty(Mono.never());
+            return Mono.firstWithSignal(first, hedge).flatMap(winner -> {
+                if (winner.hedge()) {
+                    hedging.won();
+                }
+                return winner.response().write(exchange.getResponse());
+            });
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Buffered> send(final ServerHttpRequest request) {
+        URI uri = UriComponentsBuilder.fromUri(request.getURI())
+                .scheme("http").host("localhost").port(request.getLocalAddress().getPort())
+                .build(true).toUri();
+        return webClient.get().uri(uri)
+                .headers(headers -> {
+                    request.getHeaders().forEach((name, values) -> {
+                        if (isCopied(name)) {
+                            headers.addAll(name, values);
+                        }
+                    });
+                    headers.set(Requests.HEDGE, "true");
+                })
+                .exchangeToMono(response -> response.bodyToMono(byte[].class)
+                        .defaultIfEmpty(new byte[0])
+                        .map(body -> Buffered.of(response.statusCode(), response.headers().asHttpHeaders(), body)));
+    }
+
+    private static boolean isCopied(final String header) {
+        return !NOT_COPIED.contains(header.toLowerCase(Locale.ROOT));
+    }
+
+    @Data
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private double percentile = 0.95;
+        private Duration minDelay = Duration.ofMillis(10);
+        private Duration maxDelay = Duration.ofMillis(500);
+        private double budget = 0.1;
+    }
+
+    private record Winner(boolean hedge, Buffered response) {
+    }
+
+    private record Buffered(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+
+        static Buffered of(final HttpStatusCode status, final HttpHeaders headers, final byte[] body) {
+            HttpHeaders copied = new HttpHeaders();
+            headers.forEach((name, values) -> {
+                if (isCopied(name)) {
+                    copied.addAll(name, values);
+                }
+            });
+            return new Buffered(status, copied, body);
+        }
+
+        Mono<Void> write(final ServerHttpResponse response) {
+            if (response.isCommitted()) {
+                return Mono.empty();
+            }
+            response.setStatusCode(status);
+            response.getHeaders().putAll(headers);
+            response.getHeaders().setContentLength(body.length);
+            return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(body)));
+        }
+    }
+
+    /**
+     * Keeps the status, headers and body written by the first request
+     * instead of sending them to the client.
+     */
+    private static class DetachedResponse extends ServerHttpResponseDecorator {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private volatile HttpStatusCode status;
+        private volatile byte[] body;
+
+        DetachedResponse(final ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public boolean setStatusCode(final HttpStatusCode status) {
+            this.status = status;
+            return true;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return status;
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return body != null;
+        }
+
+        @Override
+        public Mono<Void> writeWith(final Publisher<? extends DataBuffer> body) {
+            return DataBufferUtils.join(body)
+                    .doOnNext(joined -> {
+                        byte[] bytes = new byte[joined.readableByteCount()];
+                        joined.read(bytes);
+                        DataBufferUtils.release(joined);
+                        this.body = bytes;
+                    })
+                    .then(setComplete());
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(final Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return writeWith(Flux.from(body).flatMap(part -> part));
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            return Mono.fromRunnable(() -> {
+                if (body == null) {
+                    body = new byte[0];
+                }
+            });
+        }
+
+        Buffered toBuffered() {
+            return Buffered.of(status != null ? status : HttpStatus.OK, headers,
+                    body != null ? body : new byte[0]);
+        }
+    }
+
+    /**
+     * The latencies, the delay and the budget of the hedged requests of a
+     * route.
+     */
+    private static class RouteHedging {
+
+        // The budget is counted in thousandths of a request, up to a burst of
+        // MAX_CREDITS / 1000 hedged requests
+        private static final long CREDITS_PER_HEDGE = 1000;
+        private static final long MAX_CREDITS = 10 * CREDITS_PER_HEDGE;
+
+        private final long minDelayNanos;
+        private final long maxDelayNanos;
+        private final long creditsPerRequest;
+        private final Timer latency;
+        private final Counter sent;
+        private final Counter won;
+        private final AtomicLong credits = new AtomicLong();
+        private volatile long delayNanos;
+        private volatile long refreshedAt;
+
+        RouteHedging(final Config config, final MeterRegistry meterRegistry) {
+            String route = config.getRouteId() != null ? config.getRouteId() : "";
+            this.minDelayNanos = config.getMinDelay().toNanos();
+            this.maxDelayNanos = Math.max(minDelayNanos, config.getMaxDelay().toNanos());
+            this.creditsPerRequest = Math.round(config.getBudget() * CREDITS_PER_HEDGE);
+            this.latency = Timer.builder("gateway.hedge.latency")
+                    .description("Time until the service answers the first request of a GET")
+                    .tag("route", route)
+                    .publishPercentiles(config.getPercentile())
+                    .distributionStatisticExpiry(Duration.ofMinutes(1))
+                    .register(meterRegistry);
+            this.sent = counter(meterRegistry, route, "sent");
+            this.won = counter(meterRegistry, route, "won");
+            this.delayNanos = maxDelayNanos;
+            this.refreshedAt = System.nanoTime() - REFRESH_NANOS;
+        }
+
+        private static Counter counter(final MeterRegistry meterRegistry, final String route, final String result) {
+            return Counter.builder("gateway.hedge.requests")
+                    .description("Hedged GET requests sent, and those answered before the first request")
+                    .tag("route", route)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+
+        void record(final long nanos) {
+            latency.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        void accrue() {
+            credits.updateAndGet(current -> Math.min(MAX_CREDITS, current + creditsPerRequest));
+        }
+
+        boolean trySend() {
+            long current;
+            do {
+                current = credits.get();
+                if (current < CREDITS_PER_HEDGE) {
+                    return false;
+                }
+            } while (!credits.compareAndSet(current, current - CREDITS_PER_HEDGE));
+            sent.increment();
+            return true;
+        }
+
+        void won() {
+            won.increment();
+        }
+
+        long delayNanos(final long now) {
+            if (now - refreshedAt >= REFRESH_NANOS) {
+                refreshedAt = now;
+                ValueAtPercentile[] percentiles = latency.takeSnapshot().percentileValues();
+                double percentile = percentiles.length > 0 ? percentiles[0].value(TimeUnit.NANOSECONDS) : 0;
+                delayNanos = percentile > 0
+                        ? Math.max(minDelayNanos, Math.min(maxDelayNanos, (long) percentile))
+                        : maxDelayNanos;
+            }
+            return delayNanos;
+        }
+    }
+}
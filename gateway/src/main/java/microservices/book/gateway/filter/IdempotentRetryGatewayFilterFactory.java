@@ -0,0 +1,71 @@
+package microservices.book.gateway.filter;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The Retry filter of Spring Cloud Gateway, but the requests that aren't
+ * idempotent (POST and PATCH) are only retried when they have an
+ * Idempotency-Key header, which the service uses to apply them only once.
+ * Without it, they're sent once even if their method is in methods, since a
+ * retry could e.g. store the same attempt twice. The event streams aren't
+ * retried either: Retry doesn't check if the response was already committed,
+ * so a stream that breaks after sending some events would be routed again
+ * over them. The clients reconnect by themselves. It takes the same arguments
+ * as Retry:
+ * <pre>
+ * default-filters:
+ *   - name: IdempotentRetry
+ *     args:
+ *       retries: 3
+ *       methods: GET,POST
+ * </pre>
+ */
+@Component
+public class IdempotentRetryGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<RetryGatewayFilterFactory.RetryConfig> {
+
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private static final Set<HttpMethod> NOT_IDEMPOTENT = Set.of(HttpMethod.POST, HttpMethod.PATCH);
+
+    private final RetryGatewayFilterFactory retry;
+
+    public IdempotentRetryGatewayFilterFactory(final RetryGatewayFilterFactory retry) {
+        super(RetryGatewayFilterFactory.RetryConfig.class);
+        this.retry = retry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return retry.shortcutFieldOrder();
+    }
+
+    /*
+     * The Retry filter is created by its own factory, which also enables the
+     * caching of the request bodies of the route, so the retried POSTs are
+     * sent with their body again.
+     */
+    @Override
+    public GatewayFilter apply(final RetryGatewayFilterFactory.RetryConfig config) {
+        GatewayFilter retrying = retry.apply(config);
+        return (exchange, chain) -> isRetriable(exchange.getRequest())
+                ? retrying.filter(exchange, chain)
+                : chain.filter(exchange);
+    }
+
+    static boolean isRetriable(final ServerHttpRequest request) {
+        if (Requests.acceptsEventStream(request)) {
+            return false;
+        }
+        return !NOT_IDEMPOTENT.contains(request.getMethod())
+                || request.getHeaders().containsKey(IDEMPOTENCY_KEY);
+    }
+}
@@ -0,0 +1,48 @@
+package microservices.book.gateway.filter;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+final class Requests {
+
+    /**
+     * Marks the hedged requests that the gateway sends to itself.
+     */
+    static final String HEDGE = "X-Gateway-Hedge";
+
+    private Requests() {
+    }
+
+    /**
+     * @return the route and the URI of the request, which identify the
+     *         requests that get the same response
+     */
+    static String keyOf(final ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        URI uri = exchange.getRequest().getURI();
+        return (route != null ? route.getId() : "") + " " + uri.getRawPath()
+                + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+    }
+
+    /**
+     * @return true if it's a hedged request sent by the gateway itself, see
+     *         {@link HedgeGatewayFilterFactory}
+     */
+    static boolean isHedge(final ServerHttpRequest request) {
+        InetSocketAddress remote = request.getRemoteAddress();
+        return request.getHeaders().containsKey(HEDGE)
+                && remote != null && remote.getAddress() != null && remote.getAddress().isLoopbackAddress();
+    }
+
+    static boolean acceptsEventStream(final ServerHttpRequest request) {
+        return request.getHeaders().getAccept().stream()
+                .anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype);
+    }
+}
@@ -0,0 +1,111 @@
+package microservices.book.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The responses cached by the ResponseCache filter of all the routes. The
+ * memory they take is bounded by gateway.response-cache.max-size (the least
+ * used responses are dropped first), and bodies bigger than
+ * gateway.response-cache.max-entry-size are never cached.
+ * The lookups are counted in the gateway.response.cache metric, tagged with
+ * the result: hit, stale (served while it's revalidated) or miss.
+ */
+@Component
+public class ResponseCache {
+
+    enum Result { HIT, STALE, MISS }
+
+    private final Cache<String, CachedResponse> responses;
+    private final long maxEntryBytes;
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+
+    public ResponseCache(final MeterRegistry meterRegistry,
+                         @Value("${gateway.response-cache.max-size:16MB}") final DataSize maxSize,
+                         @Value("${gateway.response-cache.max-entry-size:1MB}") final DataSize maxEntrySize) {
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, CachedResponse response) -> key.length() + response.getBody().length)
+                .expireAfter(new UntilStale())
+                .build();
+        this.hits = counter(meterRegistry, "hit");
+        this.staleHits = counter(meterRegistry, "stale");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    private static Counter counter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("gateway.response.cache")
+                .description("Lookups of GET responses in the gateway cache")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param key the route and the URI of the request
+     * @return the response cached for the request, or null
+     */
+    public CachedResponse get(final String key) {
+        return responses.getIfPresent(key);
+    }
+
+    /**
+     * @return the length of the longest body that can be cached
+     */
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * @param bytes the length of a body
+     * @return true if a body that long can be cached
+     */
+    public boolean fits(final long bytes) {
+        return bytes <= maxEntryBytes;
+    }
+
+    public void put(final String key, final CachedResponse response) {
+        if (fits(response.getBody().length)) {
+            responses.put(key, response);
+        }
+    }
+
+    void record(final Result result) {
+        switch (result) {
+            case HIT -> hits.increment();
+            case STALE -> staleHits.increment();
+            case MISS -> misses.increment();
+        }
+    }
+
+    // The responses are removed once they can't be served, not even stale
+    private static class UntilStale implements Expiry<String, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(final String key, final CachedResponse response, final long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, response.getStaleUntil() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(final String key, final CachedResponse response,
+                                      final long currentTime, final long currentDuration) {
+            return expireAfterCreate(key, response, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(final String key, final CachedResponse response,
+                                    final long currentTime, final long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
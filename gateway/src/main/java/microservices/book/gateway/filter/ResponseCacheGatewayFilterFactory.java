@@ -0,0 +1,193 @@
+package microservices.book.gateway.filter;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Caches the responses to the GET requests of a route, so the same request
+ * doesn't reach the service again for timeToLive. After that, the response
+ * can still be served for staleWhileRevalidate while the gateway gets a new
+ * one in the background. E.g.
+ * <pre>
+ * filters:
+ *   - name: ResponseCache
+ *     args:
+ *       timeToLive: 1s
+ *       staleWhileRevalidate: 10s
+ * </pre>
+ * Every response gets an ETag (the one of the service, or a hash of the body),
+ * and the requests with a matching If-None-Match get a 304 without the body.
+ * Only the 200 responses are cached, and never the event streams, the
+ * responses marked as no-store or private, or the ones that vary by a request
+ * header (see {@link CachedResponse#variesByRequest}), since the key is only
+ * the route and the URI. A request with Cache-Control:
+ * no-cache skips the cached response and replaces it.
+ * The X-Cache header of the response tells whether it was a HIT, STALE or MISS.
+ */
+/*
+ * The background revalidation is a request from the gateway to itself with
+ * Cache-Control: no-cache, so it goes through the same route, filters and
+ * load balancer as the others and stores the new response on its way back.
+ * Only one revalidation per response runs at a time.
+ */
+@Slf4j
+@Component
+public class ResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    static final String X_CACHE = "X-Cache";
+
+    private final ResponseCache cache;
+    private final WebClient webClient;
+
+    public ResponseCacheGatewayFilterFactory(final ResponseCache cache,
+                                             final WebClient.Builder webClientBuilder) {
+        super(Config.class);
+        this.cache = cache;
+        this.webClient = webClientBuilder.build();
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("timeToLive", "staleWhileRevalidate");
+    }
+
+    /*
+     * It must run before the NettyWriteResponseFilter, which writes the
+     * response of the service, so that it writes to the CachingResponse.
+     */
+    @Override
+    public GatewayFilter apply(final Config config) {
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            if (request.getMethod() != HttpMethod.GET || Requests.acceptsEventStream(request)) {
+                return chain.filter(exchange);
+            }
+            String key = Requests.keyOf(exchange);
+            long now = System.currentTimeMillis();
+            CachedResponse cached = isNoCache(request) ? null : cache.get(key);
+            if (cached != null && cached.isFresh(now)) {
+                cache.record(ResponseCache.Result.HIT);
+                return serve(exchange, cached, "HIT", now);
+            }
+            if (cached != null && cached.isUsable(now)) {
+                cache.record(ResponseCache.Result.STALE);
+                revalidate(request, cached);
+                return serve(exchange, cached, "STALE", now);
+            }
+            cache.record(ResponseCache.Result.MISS);
+            CapturingResponse response = new CapturingResponse(exchange.getResponse(),
+                    captured -> isCacheable(captured, config),
+                    cache.getMaxEntryBytes(),
+                    (captured, body) -> {
+                        CachedResponse stored = toCached(captured, body, config);
+                        cache.put(key, stored);
+                        captured.getHeaders().set(X_CACHE, "MISS");
+                        return write(request, captured.getDelegate(), stored);
+                    });
+            return chain.filter(exchange.mutate().response(response).build());
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private static boolean isNoCache(final ServerHttpRequest request) {
+        String cacheControl = request.getHeaders().getCacheControl();
+        return cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-cache");
+    }
+
+    private Mono<Void> serve(final ServerWebExchange exchange, final CachedResponse cached,
+                             final String result, final long now) {
+        ServerHttpResponse response = exchange.getResponse();
+        cached.writeHeaders(response);
+        response.getHeaders().set(HttpHeaders.AGE, String.valueOf((now - cached.getStoredAt()) / 1000));
+        response.getHeaders().set(X_CACHE, result);
+        return write(exchange.getRequest(), response, cached);
+    }
+
+    private static Mono<Void> write(final ServerHttpRequest request, final ServerHttpResponse response,
+                                    final CachedResponse cached) {
+        response.getHeaders().setETag(cached.getETag());
+        if (matches(request.getHeaders().getIfNoneMatch(), cached.getETag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            response.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+            return response.setComplete();
+        }
+        return cached.writeBody(response);
+    }
+
+    private static boolean matches(final List<String> ifNoneMatch, final String eTag) {
+        return ifNoneMatch.stream().anyMatch(tag -> tag.equals("*") || weak(tag).equals(weak(eTag)));
+    }
+
+    private static String weak(final String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    private void revalidate(final ServerHttpRequest request, final CachedResponse cached) {
+        InetSocketAddress local = request.getLocalAddress();
+        if (local == null || !cached.startRevalidation()) {
+            return;
+        }
+        URI uri = UriComponentsBuilder.fromUri(request.getURI())
+                .scheme("http").host("localhost").port(local.getPort())
+                .build(true).toUri();
+        webClient.get().uri(uri)
+                .header(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue())
+                .retrieve()
+                .toBodilessEntity()
+                .doFinally(signal -> cached.endRevalidation())
+                .subscribe(entity -> log.debug("Revalidated {}", uri),
+                        e -> log.debug("Could not revalidate {}: {}", uri, e.getMessage()));
+    }
+
+    private boolean isCacheable(final ServerHttpResponse response, final Config config) {
+        HttpStatusCode status = response.getStatusCode();
+        HttpHeaders headers = response.getHeaders();
+        String cacheControl = headers.getCacheControl();
+        return status != null && status.value() == HttpStatus.OK.value()
+                && config.getTimeToLive().plus(config.getStaleWhileRevalidate()).toMillis() > 0
+                && !MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(headers.getContentType())
+                && (cacheControl == null || !(cacheControl.contains("no-store") || cacheControl.contains("private")))
+                && !CachedResponse.variesByRequest(headers)
+                && cache.fits(Math.max(0, headers.getContentLength()));
+    }
+
+    private static CachedResponse toCached(final ServerHttpResponse response, final byte[] body,
+                                           final Config config) {
+        long now = System.currentTimeMillis();
+        long freshUntil = now + config.getTimeToLive().toMillis();
+        String eTag = response.getHeaders().getETag() != null ? response.getHeaders().getETag()
+                : "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        return new CachedResponse(response.getStatusCode(), response.getHeaders(), body, eTag, now, freshUntil,
+                freshUntil + config.getStaleWhileRevalidate().toMillis());
+    }
+
+    @Data
+    public static class Config {
+        private Duration timeToLive = Duration.ofSeconds(1);
+        private Duration staleWhileRevalidate = Duration.ZERO;
+    }
+}
@@ -0,0 +1,131 @@
+package microservices.book.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collapses the identical GET requests of a route that arrive while the first
+ * one is still waiting for the service: only the first one (the leader) is
+ * sent, and the others (the followers) get a copy of its response. Unlike the
+ * ResponseCache filter, nothing is kept once the response arrives, so the next
+ * request goes to the service again.
+ * The requests are counted in the gateway.single-flight.requests metric,
+ * tagged with their role, so the collapse ratio is followers / (leaders +
+ * followers). The gateway.single-flight.in-flight gauge is the number of
+ * requests being waited for.
+ */
+/*
+ * The followers wait for a future completed by the leader with a copy of its
+ * response. If the response can't be shared (an event stream, a response that
+ * varies by a request header, or a body bigger than
+ * gateway.single-flight.max-body-size), or the leader fails or is
+ * cancelled by its client, the future is completed empty and the followers
+ * send their own requests.
+ * When used together with the ResponseCache filter, it must go after it, so
+ * only the requests that miss the cache are collapsed. The hedged requests
+ * are never collapsed, they would wait for the request they're hedging.
+ */
+@Component
+public class SingleFlightGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
+
+    private final Map<String, CompletableFuture<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final long maxBodyBytes;
+    private final Counter leaders;
+    private final Counter followers;
+
+    public SingleFlightGatewayFilterFactory(final MeterRegistry meterRegistry,
+                                            @Value("${gateway.single-flight.max-body-size:1MB}") final DataSize maxBodySize) {
+        this.maxBodyBytes = maxBodySize.toBytes();
+        this.leaders = counter(meterRegistry, "leader");
+        this.followers = counter(meterRegistry, "follower");
+        Gauge.builder("gateway.single-flight.in-flight", inFlight, Map::size)
+                .description("Distinct GET requests waiting for the service")
+                .register(meterRegistry);
+    }
+
+    private static Counter counter(final MeterRegistry meterRegistry, final String role) {
+        return Counter.builder("gateway.single-flight.requests")
+                .description("GET requests sent to the service (leader) or collapsed into another one (follower)")
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public GatewayFilter apply(final Object config) {
+        // Before the NettyWriteResponseFilter, like the ResponseCache
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            if (exchange.getRequest().getMethod() != HttpMethod.GET
+                    || Requests.acceptsEventStream(exchange.getRequest())
+                    || Requests.isHedge(exchange.getRequest())) {
+                return chain.filter(exchange);
+            }
+            String key = Requests.keyOf(exchange);
+            CompletableFuture<CachedResponse> flight = new CompletableFuture<>();
+            CompletableFuture<CachedResponse> leader = inFlight.putIfAbsent(key, flight);
+            if (leader != null) {
+                followers.increment();
+                // A follower that is cancelled must not cancel the leader
+                return Mono.fromFuture(leader, true)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(shared -> {
+                            if (shared.isEmpty()) {
+                                return chain.filter(exchange);
+                            }
+                            shared.get().writeHeaders(exchange.getResponse());
+                            return shared.get().writeBody(exchange.getResponse());
+                        });
+            }
+            leaders.increment();
+            CapturingResponse response = new CapturingResponse(exchange.getResponse(),
+                    captured -> {
+                        if (isShareable(captured)) {
+                            return true;
+                        }
+                        // The followers don't wait for a response they can't get
+                        land(key, flight, null);
+                        return false;
+                    },
+                    maxBodyBytes,
+                    (captured, body) -> {
+                        CachedResponse shared = CachedResponse.of(captured.getStatusCode(),
+                                captured.getHeaders(), body);
+                        land(key, flight, shared);
+                        return shared.writeBody(captured.getDelegate());
+                    });
+            return chain.filter(exchange.mutate().response(response).build())
+                    .doFinally(signal -> land(key, flight, null));
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private boolean isShareable(final ServerHttpResponse response) {
+        return response.getStatusCode() != null
+                && !MediaType.TEXT_EVENT_STREAM.equalsTypeAndSubtype(response.getHeaders().getContentType())
+                && !CachedResponse.variesByRequest(response.getHeaders())
+                && response.getHeaders().getContentLength() <= maxBodyBytes;
+    }
+
+    // Removed first, so the requests that arrive from now on start a new flight
+    private void land(final String key, final CompletableFuture<CachedResponse> flight,
+                      final CachedResponse response) {
+        inFlight.remove(key, flight);
+        flight.complete(response);
+    }
+}
@@ -0,0 +1,95 @@
+package microservices.book.gateway.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The latency and load of an instance of a service, as seen by the gateway:
+ * an exponentially weighted moving average (EWMA) of the response times, and
+ * the number of requests waiting for it (in flight).
+ * The average goes up to a slower response straight away, and back down with
+ * the faster ones. Without new responses, it decays towards zero with the
+ * given decay time, so an instance that was slow gets tried again later.
+ */
+/*
+ * The average and the time of the last update change together, so they are
+ * kept in an immutable pair replaced with compare-and-set, without locks.
+ */
+public class InstanceStats {
+
+    private record Ewma(double nanos, long updatedAt) {
+    }
+
+    private final double decayNanos;
+    private final AtomicReference<Ewma> ewma = new AtomicReference<>(new Ewma(0, 0));
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public InstanceStats(final long decayNanos) {
+        this.decayNanos = decayNanos;
+    }
+
+    public void start() {
+        inFlight.incrementAndGet();
+        requests.incrementAndGet();
+    }
+
+    /**
+     * @param latencyNanos the time the instance took to respond
+     * @param failed       true if it failed to respond, or with an error
+     * @param now          the current System.nanoTime()
+     */
+    public void end(final long latencyNanos, final boolean failed, final long now) {
+        inFlight.decrementAndGet();
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        ewma.updateAndGet(current -> {
+            double decayed = decayed(current, now);
+            double next = latencyNanos > decayed ? latencyNanos
+                    : decayed + (latencyNanos - decayed) * (1 - weight(current, now));
+            return new Ewma(next, now);
+        });
+    }
+
+    /**
+     * @param now the current System.nanoTime()
+     * @return the average latency in nanoseconds
+     */
+    public double latency(final long now) {
+        return decayed(ewma.get(), now);
+    }
+
+    /**
+     * @param now the current System.nanoTime()
+     * @return how costly it is to send a new request to the instance: its
+     *         latency times the requests it would have to serve. The lower
+     *         the better
+     */
+    public double cost(final long now) {
+        // The instances without responses yet cost almost nothing, so they are tried first
+        return Math.max(latency(now), 1_000) * (inFlight.get() + 1);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    private double decayed(final Ewma current, final long now) {
+        return current.nanos() * weight(current, now);
+    }
+
+    private double weight(final Ewma current, final long now) {
+        return Math.exp(-Math.max(0, now - current.updatedAt()) / decayNanos);
+    }
+}
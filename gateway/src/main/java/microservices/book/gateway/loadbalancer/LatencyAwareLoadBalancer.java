@@ -0,0 +1,57 @@
+package microservices.book.gateway.loadbalancer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the instance of a service with the "power of two choices": it picks
+ * two instances at random and sends the request to the one with the lowest
+ * cost, the average latency times the requests in flight (see
+ * {@link InstanceStats#cost(long)}). A busy or slow instance gets fewer
+ * requests, without sending them all to the fastest one.
+ */
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private final ObjectProvider<ServiceInstanceListSupplier> instancesProvider;
+    private final LoadBalancerStats stats;
+
+    public LatencyAwareLoadBalancer(final ObjectProvider<ServiceInstanceListSupplier> instancesProvider,
+                                    final LoadBalancerStats stats) {
+        this.instancesProvider = instancesProvider;
+        this.stats = stats;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(final Request request) {
+        ServiceInstanceListSupplier supplier = instancesProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(this::choose);
+    }
+
+    Response<ServiceInstance> choose(final List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            return new EmptyResponse();
+        }
+        if (instances.size() == 1) {
+            return new DefaultResponse(instances.get(0));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(instances.size());
+        // Any other one, never the same
+        int second = (first + 1 + random.nextInt(instances.size() - 1)) % instances.size();
+        ServiceInstance a = instances.get(first);
+        ServiceInstance b = instances.get(second);
+        long now = System.nanoTime();
+        return new DefaultResponse(stats.of(a).cost(now) <= stats.of(b).cost(now) ? a : b);
+    }
+}
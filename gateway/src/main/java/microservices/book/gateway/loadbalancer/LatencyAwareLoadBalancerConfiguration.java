@@ -0,0 +1,26 @@
+package microservices.book.gateway.loadbalancer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * The load balancer of every service, created in the context of each one. It
+ * replaces the default round robin unless gateway.loadbalancer.strategy is
+ * round-robin.
+ * It's not a @Configuration on purpose: it would be picked by the component
+ * scan and shared by all the services.
+ */
+public class LatencyAwareLoadBalancerConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "gateway.loadbalancer.strategy", havingValue = "latency", matchIfMissing = true)
+    public ReactorLoadBalancer<ServiceInstance> latencyAwareLoadBalancer(
+            final ObjectProvider<ServiceInstanceListSupplier> instancesProvider,
+            final LoadBalancerStats stats) {
+        return new LatencyAwareLoadBalancer(instancesProvider, stats);
+    }
+}
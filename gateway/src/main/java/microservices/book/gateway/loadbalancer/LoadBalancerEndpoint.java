@@ -0,0 +1,38 @@
+package microservices.book.gateway.loadbalancer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Shows the stats of the instances of every service in /actuator/loadbalancer,
+ * as the load balancer sees them now.
+ */
+@Component
+@Endpoint(id = "loadbalancer")
+@RequiredArgsConstructor
+public class LoadBalancerEndpoint {
+
+    private final LoadBalancerStats stats;
+
+    public record InstanceView(double latencyMs, double cost, int inFlight, long requests, long failures) {
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, InstanceView>> instances() {
+        long now = System.nanoTime();
+        Map<String, Map<String, InstanceView>> services = new TreeMap<>();
+        stats.getServices().forEach((service, instances) -> {
+            Map<String, InstanceView> views = new TreeMap<>();
+            instances.forEach((instance, s) -> views.put(instance, new InstanceView(
+                    s.latency(now) / 1_000_000, s.cost(now) / 1_000_000,
+                    s.getInFlight(), s.getRequests(), s.getFailures())));
+            services.put(service, views);
+        });
+        return services;
+    }
+}
@@ -0,0 +1,96 @@
+package microservices.book.gateway.loadbalancer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link InstanceStats} of every instance the gateway sends requests
+ * to. The load balancer calls it when a request to an instance starts and
+ * when it completes, and the {@link LatencyAwareLoadBalancer} uses the stats
+ * to choose the next instance.
+ * The responses with a 5xx status count as failures. The averages decay with
+ * gateway.loadbalancer.ewma-decay.
+ */
+@Component
+public class LoadBalancerStats
+        implements LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+
+    private final long decayNanos;
+    private final Map<String, Map<String, InstanceStats>> services = new ConcurrentHashMap<>();
+
+    public LoadBalancerStats(@Value("${gateway.loadbalancer.ewma-decay:10s}") final Duration decay) {
+        this.decayNanos = decay.toNanos();
+    }
+
+    /**
+     * @param instance an instance of a service
+     * @return its stats, new ones if there were no requests to it yet
+     */
+    public InstanceStats of(final ServiceInstance instance) {
+        return services.computeIfAbsent(instance.getServiceId(), id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(keyOf(instance), key -> new InstanceStats(decayNanos));
+    }
+
+    /**
+     * @return the stats of the instances of every service, by service id and
+     *         then by host:port
+     */
+    public Map<String, Map<String, InstanceStats>> getServices() {
+        return services;
+    }
+
+    static String keyOf(final ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    @Override
+    public boolean supports(final Class requestContextClass, final Class responseClass,
+                            final Class serverTypeClass) {
+        return RequestDataContext.class.isAssignableFrom(requestContextClass)
+                && ResponseData.class.isAssignableFrom(responseClass)
+                && ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(final Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(final Request<RequestDataContext> request,
+                               final Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer()) {
+            return;
+        }
+        if (request.getContext().getRequestStartTime() == 0) {
+            request.getContext().setRequestStartTime(System.nanoTime());
+        }
+        of(lbResponse.getServer()).start();
+    }
+
+    @Override
+    public void onComplete(final CompletionContext<ResponseData, ServiceInstance, RequestDataContext> context) {
+        Response<ServiceInstance> lbResponse = context.getLoadBalancerResponse();
+        if (lbResponse == null || !lbResponse.hasServer()
+                || context.status() == CompletionContext.Status.DISCARD) {
+            return;
+        }
+        long now = System.nanoTime();
+        long startedAt = context.getLoadBalancerRequest().getContext().getRequestStartTime();
+        ResponseData response = context.getClientResponse();
+        boolean failed = context.status() == CompletionContext.Status.FAILED
+                || (response != null && response.getHttpStatus() != null
+                && response.getHttpStatus().is5xxServerError());
+        of(lbResponse.getServer()).end(startedAt > 0 ? now - startedAt : 0, failed, now);
+    }
+}
@@ -0,0 +1,115 @@
+package microservices.book.gateway.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A rate limiter for the RequestRateLimiter filter of Spring Cloud Gateway
+ * that keeps the buckets in memory, so it doesn't need Redis. Every key of
+ * every route gets a {@link TokenBucket} that is refilled with replenishRate
+ * tokens per second, up to burstCapacity, and every request takes
+ * requestedTokens from it. They're configured per route like the ones of the
+ * Redis rate limiter:
+ * <pre>
+ * filters:
+ *   - name: RequestRateLimiter
+ *     args:
+ *       rate-limiter: "#{@localRateLimiter}"
+ *       key-resolver: "#{@userKeyResolver}"
+ *       local-rate-limiter.replenishRate: 10
+ *       local-rate-limiter.burstCapacity: 20
+ * </pre>
+ * The rejected requests get a 429 with a Retry-After header, and all of them
+ * get the X-RateLimit-* headers. The limits are per gateway instance, so with
+ * N instances a key can get up to N times the rate.
+ * The requests are counted in the gateway.rate-limiter.requests metric, by
+ * route and result (allowed or denied).
+ */
+/*
+ * The buckets are kept in a Caffeine cache, which is split in segments that
+ * are updated concurrently, and the buckets themselves are updated without
+ * locks. The cache is bounded by gateway.rate-limiter.max-keys, and a bucket
+ * not used for gateway.rate-limiter.idle-timeout is dropped: a bucket that
+ * has been idle long enough is full anyway, so it's the same as a new one.
+ */
+@Component
+public class LocalRateLimiter extends AbstractRateLimiter<LocalRateLimiter.Config> {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "local-rate-limiter";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+
+    private final Config defaultConfig;
+    private final Cache<String, TokenBucket> buckets;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public LocalRateLimiter(final ConfigurationService configurationService,
+                            final MeterRegistry meterRegistry,
+                            @Value("${gateway.rate-limiter.replenish-rate:10}") final int replenishRate,
+                            @Value("${gateway.rate-limiter.burst-capacity:20}") final int burstCapacity,
+                            @Value("${gateway.rate-limiter.max-keys:100000}") final long maxKeys,
+                            @Value("${gateway.rate-limiter.idle-timeout:10m}") final Duration idleTimeout) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.defaultConfig = new Config();
+        defaultConfig.setReplenishRate(replenishRate);
+        defaultConfig.setBurstCapacity(burstCapacity);
+        this.meterRegistry = meterRegistry;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    @Override
+    public Mono<Response> isAllowed(final String routeId, final String id) {
+        Config config = getConfig().getOrDefault(routeId, defaultConfig);
+        long nanosPerToken = TimeUnit.SECONDS.toNanos(1) / Math.max(1, config.getReplenishRate());
+        TokenBucket.Result result = buckets.get(routeId + " " + id, key -> new TokenBucket())
+                .take(config.getRequestedTokens(), nanosPerToken, config.getBurstCapacity(), System.nanoTime());
+        counter(routeId, result.allowed()).increment();
+        Map<String, String> headers = new HashMap<>();
+        headers.put(REMAINING_HEADER, String.valueOf(result.remaining()));
+        headers.put(REPLENISH_RATE_HEADER, String.valueOf(config.getReplenishRate()));
+        headers.put(BURST_CAPACITY_HEADER, String.valueOf(config.getBurstCapacity()));
+        if (!result.allowed()) {
+            // In whole seconds, rounded up
+            long seconds = Math.max(1, (result.retryAfterNanos() + TimeUnit.SECONDS.toNanos(1) - 1)
+                    / TimeUnit.SECONDS.toNanos(1));
+            headers.put(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        }
+        return Mono.just(new Response(result.allowed(), headers));
+    }
+
+    private Counter counter(final String routeId, final boolean allowed) {
+        String result = allowed ? "allowed" : "denied";
+        return counters.computeIfAbsent(routeId + " " + result, key -> Counter.builder("gateway.rate-limiter.requests")
+                .description("Requests allowed or denied by the rate limiter")
+                .tag("route", routeId)
+                .tag("result", result)
+                .register(meterRegistry));
+    }
+
+    @Data
+    public static class Config {
+        private int replenishRate = 10;
+        private int burstCapacity = 20;
+        private int requestedTokens = 1;
+    }
+}
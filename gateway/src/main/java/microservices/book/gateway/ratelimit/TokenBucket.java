@@ -0,0 +1,49 @@
+package microservices.book.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bucket of up to capacity tokens that gets new tokens at a fixed rate. A
+ * request takes tokens from it, and it's rejected when there aren't enough.
+ */
+/*
+ * Instead of the tokens and the time they were counted, the bucket only keeps
+ * the time when it will be full again (the "theoretical arrival time" of the
+ * GCRA algorithm, which behaves as a token bucket). Taking tokens pushes that
+ * time forward, and a request is rejected if it would go further than the
+ * capacity from now. A single number is updated with compare-and-set, without
+ * locks.
+ */
+class TokenBucket {
+
+    record Result(boolean allowed, long remaining, long retryAfterNanos) {
+    }
+
+    // Never taken yet: full
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param tokens        the tokens that the request takes
+     * @param nanosPerToken the time it takes to get a new token
+     * @param capacity      the maximum number of tokens
+     * @param now           the current System.nanoTime()
+     * @return whether the tokens were taken, the tokens that are left, and
+     *         when rejected, the time until there are enough
+     */
+    Result take(final int tokens, final long nanosPerToken, final int capacity, final long now) {
+        long cost = tokens * nanosPerToken;
+        long window = capacity * nanosPerToken;
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + cost;
+            long untilFull = next - now;
+            if (untilFull > window) {
+                long left = Math.max(0, window - (untilFull - cost));
+                return new Result(false, left / nanosPerToken, untilFull - window);
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return new Result(true, (window - untilFull) / nanosPerToken, 0);
+            }
+        }
+    }
+}
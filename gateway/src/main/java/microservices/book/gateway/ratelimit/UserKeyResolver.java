@@ -0,0 +1,71 @@
+package microservices.book.gateway.ratelimit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CACHED_REQUEST_BODY_ATTR;
+
+/**
+ * The key of the rate limits of a request: the alias of the user when the
+ * request has it, or the IP address of the client. The alias is the alias
+ * query parameter (e.g. GET /challenges/random, GET /attempts) or the
+ * userAlias of the JSON body (POST /attempts).
+ * Aliases aren't authenticated, so a client can get around its limit by
+ * changing its alias: the ConcurrencyLimit filter still protects the service.
+ */
+/*
+ * The body is only read if the gateway already cached it, which it does for
+ * the routes that retry POSTs (see IdempotentRetry). Reading it here would
+ * consume it before it's sent to the service.
+ */
+@Slf4j
+@Component("userKeyResolver")
+@RequiredArgsConstructor
+public class UserKeyResolver implements KeyResolver {
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public Mono<String> resolve(final ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        String alias = request.getQueryParams().getFirst("alias");
+        if (alias == null) {
+            alias = aliasInBody(request, exchange.getAttribute(CACHED_REQUEST_BODY_ATTR));
+        }
+        if (alias != null && !alias.isBlank()) {
+            return Mono.just("alias:" + alias);
+        }
+        InetSocketAddress remote = request.getRemoteAddress();
+        return Mono.just("ip:" + (remote != null && remote.getAddress() != null
+                ? remote.getAddress().getHostAddress() : "unknown"));
+    }
+
+    private String aliasInBody(final ServerHttpRequest request, final DataBuffer body) {
+        if (body == null || body.readableByteCount() == 0
+                || !MediaType.APPLICATION_JSON.isCompatibleWith(request.getHeaders().getContentType())) {
+            return null;
+        }
+        try {
+            // Without moving the read position, the body is still sent as it is
+            JsonNode json = objectMapper.readTree(body.toString(body.readPosition(),
+                    body.readableByteCount(), StandardCharsets.UTF_8));
+            return json.path("userAlias").asText(null);
+        } catch (final IOException e) {
+            log.debug("Could not read the alias of the body: {}", e.getMessage());
+            return null;
+        }
+    }
+}
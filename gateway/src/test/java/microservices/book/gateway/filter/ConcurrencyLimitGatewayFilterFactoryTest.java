@@ -0,0 +1,68 @@
+package microservices.book.gateway.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class ConcurrencyLimitGatewayFilterFactoryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GatewayFilter filter;
+
+    ConcurrencyLimitGatewayFilterFactoryTest() {
+        ConcurrencyLimitGatewayFilterFactory.Config config = new ConcurrencyLimitGatewayFilterFactory.Config();
+        config.setRouteId("multiplication");
+        config.setMaxConcurrent(1);
+        config.setRetryAfter(Duration.ofSeconds(2));
+        filter = new ConcurrencyLimitGatewayFilterFactory(meterRegistry).apply(config);
+    }
+
+    @Test
+    public void requestOverTheLimitIsRejectedWithRetryAfterTest() {
+        // given
+        Sinks.Empty<Void> upstream = Sinks.empty();
+        GatewayFilterChain waiting = exchange -> upstream.asMono();
+        filter.filter(exchange(), waiting).subscribe();
+
+        // when
+        MockServerWebExchange rejected = exchange();
+        filter.filter(rejected, waiting).block();
+
+        // then
+        then(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        then(rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        then(meterRegistry.get("gateway.concurrency-limit.rejected").counter().count()).isEqualTo(1);
+        then(meterRegistry.get("gateway.concurrency-limit.in-flight").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    public void finishedRequestReleasesItsSlotTest() {
+        // given
+        filter.filter(exchange(), exchange -> Mono.error(new IllegalStateException("Service down")))
+                .onErrorResume(e -> Mono.empty())
+                .block();
+
+        // when
+        MockServerWebExchange next = exchange();
+        filter.filter(next, exchange -> Mono.empty()).block();
+
+        // then
+        then(next.getResponse().getStatusCode()).isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        then(meterRegistry.get("gateway.concurrency-limit.in-flight").gauge().value()).isZero();
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/attempts"));
+    }
+}
@@ -0,0 +1,156 @@
+package microservices.book.gateway.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class HedgeGatewayFilterFactoryTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final List<ClientRequest> hedges = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HedgeGatewayFilterFactory factory = new HedgeGatewayFilterFactory(meterRegistry,
+            WebClient.builder().exchangeFunction(request -> {
+                hedges.add(request);
+                return Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body("[hedge]")
+                        .build());
+            }));
+
+    @Test
+    public void fastResponsesAreNotHedgedTest() {
+        // given
+        GatewayFilter filter = factory.apply(config(1.0));
+        MockServerWebExchange exchange = get("/leaders");
+
+        // when
+        filter.filter(exchange, upstream("[1]", Duration.ZERO, null)).block();
+
+        // then
+        then(hedges).isEmpty();
+        then(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        then(exchange.getResponse().getBodyAsString().block()).isEqualTo("[1]");
+    }
+
+    @Test
+    public void slowResponseIsHedgedAndTheFirstOneWinsTest() {
+        // given
+        GatewayFilter filter = factory.apply(config(1.0));
+        MockServerWebExchange exchange = get("/leaders?limit=5");
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        // when
+        filter.filter(exchange, upstream("[1]", Duration.ofSeconds(5), cancelled)).block(Duration.ofSeconds(2));
+
+        // then the hedge is sent to the gateway itself, and the slow one is cancelled
+        then(hedges).hasSize(1);
+        then(hedges.get(0).url().toString()).isEqualTo("http://localhost:8000/leaders?limit=5");
+        then(hedges.get(0).headers().containsKey(Requests.HEDGE)).isTrue();
+        then(exchange.getResponse().getBodyAsString().block()).isEqualTo("[hedge]");
+        then(exchange.getResponse().getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        then(cancelled).isTrue();
+        then(meterRegistry.get("gateway.hedge.requests").tag("result", "won").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void noHedgesWithoutBudgetTest() {
+        // given
+        GatewayFilter filter = factory.apply(config(0));
+        MockServerWebExchange exchange = get("/leaders");
+
+        // when
+        filter.filter(exchange, upstream("[1]", Duration.ofMillis(200), null)).block();
+
+        // then
+        then(hedges).isEmpty();
+        then(exchange.getResponse().getBodyAsString().block()).isEqualTo("[1]");
+    }
+
+    @Test
+    public void hedgedRequestsAreNotHedgedAgainTest() {
+        // given
+        GatewayFilter filter = factory.apply(config(1.0));
+        MockServerWebExchange exchange = MockServerWebExchange.from(request("/leaders")
+                .header(Requests.HEDGE, "true"));
+
+        // when
+        filter.filter(exchange, upstream("[1]", Duration.ofMillis(200), null)).block();
+
+        // then
+        then(hedges).isEmpty();
+        then(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    public void postsAreNotHedgedTest() {
+        // given
+        GatewayFilter filter = factory.apply(config(1.0));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/attempts")
+                .localAddress(new InetSocketAddress("localhost", 8000)));
+
+        // when
+        filter.filter(exchange, upstream("{}", Duration.ofMillis(200), null)).block();
+
+        // then
+        then(hedges).isEmpty();
+    }
+
+    private static HedgeGatewayFilterFactory.Config config(final double budget) {
+        HedgeGatewayFilterFactory.Config config = new HedgeGatewayFilterFactory.Config();
+        config.setRouteId("gamification");
+        config.setMinDelay(Duration.ofMillis(10));
+        config.setMaxDelay(Duration.ofMillis(50));
+        config.setBudget(budget);
+        return config;
+    }
+
+    private static MockServerWebExchange get(final String path) {
+        return MockServerWebExchange.from(request(path));
+    }
+
+    private static MockServerHttpRequest.BaseBuilder<?> request(final String path) {
+        return MockServerHttpRequest.get("http://localhost:8000" + path)
+                .localAddress(new InetSocketAddress("localhost", 8000))
+                .remoteAddress(new InetSocketAddress("127.0.0.1", 50000));
+    }
+
+    private GatewayFilterChain upstream(final String body, final Duration delay, final AtomicBoolean cancelled) {
+        return exchange -> {
+            upstreamCalls.incrementAndGet();
+            return Mono.delay(delay).then(Mono.defer(() -> {
+                exchange.getResponse().setStatusCode(HttpStatus.OK);
+                exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                return exchange.getResponse().writeWith(
+                        Mono.just(exchange.getResponse().bufferFactory().wrap(bytes)));
+            })).doOnCancel(() -> {
+                if (cancelled != null) {
+                    cancelled.set(true);
+                }
+            });
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package microservices.book.gateway.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class IdempotentRetryGatewayFilterFactoryTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final GatewayFilter filter = new IdempotentRetryGatewayFilterFactory(new RetryGatewayFilterFactory())
+            .apply(new RetryGatewayFilterFactory.RetryConfig()
+                    .setRetries(3)
+                    .setMethods(HttpMethod.GET, HttpMethod.POST));
+
+    @Test
+    public void postWithoutIdempotencyKeyIsNotRetriedTest() {
+        // when
+        send(MockServerHttpRequest.post("/attempts"));
+
+        // then
+        then(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    public void postWithIdempotencyKeyIsRetriedTest() {
+        // when
+        send(MockServerHttpRequest.post("/attempts")
+                .header(IdempotentRetryGatewayFilterFactory.IDEMPOTENCY_KEY, "key-1"));
+
+        // then
+        then(upstreamCalls).hasValue(4);
+    }
+
+    @Test
+    public void getIsRetriedTest() {
+        // when
+        send(MockServerHttpRequest.get("/leaders"));
+
+        // then
+        then(upstreamCalls).hasValue(4);
+    }
+
+    @Test
+    public void eventStreamIsNotRetriedTest() {
+        // when
+        send(MockServerHttpRequest.get("/leaders/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM));
+
+        // then
+        then(upstreamCalls).hasValue(1);
+    }
+
+    private void send(final MockServerHttpRequest.BaseBuilder<?> request) {
+        // Deferred like the chain of the gateway, so every retry sends the request again
+        GatewayFilterChain failing = exchange -> Mono.defer(() -> {
+            upstreamCalls.incrementAndGet();
+            return Mono.error(new IOException("Connection reset"));
+        });
+        filter.filter(MockServerWebExchange.from(request), failing)
+                .onErrorResume(e -> Mono.empty())
+                .block();
+    }
+}
@@ -0,0 +1,234 @@
+package microservices.book.gateway.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class ResponseCacheGatewayFilterFactoryTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final List<ClientRequest> revalidations = new ArrayList<>();
+    private ResponseCacheGatewayFilterFactory factory;
+
+    @BeforeEach
+    public void setUp() {
+        ResponseCache cache = new ResponseCache(new SimpleMeterRegistry(),
+                DataSize.ofMegabytes(1), DataSize.ofKilobytes(1));
+        WebClient.Builder webClient = WebClient.builder().exchangeFunction(request -> {
+            // the revalidation stays in flight
+            revalidations.add(request);
+            return Mono.<ClientResponse>never();
+        });
+        factory = new ResponseCacheGatewayFilterFactory(cache, webClient);
+    }
+
+    @Test
+    public void secondRequestIsServedFromTheCacheTest() {
+        // given
+        GatewayFilter filter = filter(Duration.ofMinutes(1), Duration.ZERO);
+        MockServerWebExchange first = get("/leaders");
+        filter.filter(first, upstream("[1]")).block();
+
+        // when
+        MockServerWebExchange second = get("/leaders");
+        filter.filter(second, upstream("[2]")).block();
+
+        // then
+        then(upstreamCalls).hasValue(1);
+        then(first.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilterFactory.X_CACHE)).isEqualTo("MISS");
+        then(second.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilterFactory.X_CACHE)).isEqualTo("HIT");
+        then(second.getResponse().getBodyAsString().block()).isEqualTo("[1]");
+        then(second.getResponse().getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        then(second.getResponse().getHeaders().getETag())
+                .isEqualTo(first.getResponse().getHeaders().getETag());
+    }
+
+    @Test
+    public void matchingETagGetsNotModifiedTest() {
+        // given
+        GatewayFilter filter = filter(Duration.ofMinutes(1), Duration.ZERO);
+        MockServerWebExchange first = get("/leaders");
+        filter.filter(first, upstream("[1]")).block();
+        String eTag = first.getResponse().getHeaders().getETag();
+
+        // when
+        MockServerWebExchange second = MockServerWebExchange.from(MockServerHttpRequest.get("/leaders")
+                .ifNoneMatch(eTag));
+        filter.filter(second, upstream("[1]")).block();
+
+        // then
+        then(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        then(second.getResponse().getBodyAsString().block()).isNullOrEmpty();
+    }
+
+    @Test
+    public void staleResponseIsServedAndRevalidatedOnceTest() {
+        // given a response that is stale straight away
+        GatewayFilter filter = filter(Duration.ZERO, Duration.ofMinutes(1));
+        filter.filter(get("/leaders"), upstream("[1]")).block();
+
+        // when
+        MockServerWebExchange second = get("/leaders");
+        filter.filter(second, upstream("[2]")).block();
+        filter.filter(get("/leaders"), upstream("[2]")).block();
+
+        // then
+        then(upstreamCalls).hasValue(1);
+        then(second.getResponse().getBodyAsString().block()).isEqualTo("[1]");
+        then(second.getResponse().getHeaders().getFirst(ResponseCacheGatewayFilterFactory.X_CACHE)).isEqualTo("STALE");
+        then(revalidations).hasSize(1);
+        then(revalidations.get(0).url().toString()).isEqualTo("http://localhost:8000/leaders");
+        then(revalidations.get(0).headers().getCacheControl()).isEqualTo("no-cache");
+    }
+
+    @Test
+    public void noCacheRequestsReplaceTheResponseTest() {
+        // given
+        GatewayFilter filter = filter(Duration.ofMinutes(1), Duration.ZERO);
+        filter.filter(get("/leaders"), upstream("[1]")).block();
+
+        // when
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/leaders")
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")), upstream("[2]")).block();
+        MockServerWebExchange third = get("/leaders");
+        filter.filter(third, upstream("[3]")).block();
+
+        // then
+        then(upstreamCalls).hasValue(2);
+        then(third.getResponse().getBodyAsString().block()).isEqualTo("[2]");
+    }
+
+    @Test
+    public void errorsAndBigBodiesAreNotCachedTest() {
+        // given
+        GatewayFilter filter = filter(Duration.ofMinutes(1), Duration.ZERO);
+
+        // when
+        filter.filter(get("/leaders"), upstream(HttpStatus.SERVICE_UNAVAILABLE, "")).block();
+        filter.filter(get("/leaders"), upstream("x".repeat(2048))).block();
+        filter.filter(get("/leaders"), upstream("[1]")).block();
+
+        // then
+        then(upstreamCalls).hasValue(3);
+    }
+
+    @Test
+    public void otherMethodsAndQueriesAreNotSharedTest() {
+        // given
+        GatewayFilter filter = filter(Duration.ofMinutes(1), Duration.ZERO);
+        filter.filter(get("/users/1,2"), upstream("[1]")).block();
+
+        // when
+        filter.filter(get("/users/1,3"), upstream("[2]")).block();
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.post("/users/1,2")),
+                upstream("[3]")).block();
+
+        // then
+        then(upstreamCalls).hasValue(3);
+    }
+
+    @Test
+    public void chunkedBodyOverTheLimitIsWrittenButNotCachedTest() {
+        // given - 3 chunks of 512 bytes without Content-Length, the limit is 1KB
+        GatewayFilter filter = filter(Duration.ofMinutes(1), Duration.ZERO);
+        byte[] chunk = "x".repeat(512).getBytes(StandardCharsets.UTF_8);
+        GatewayFilterChain chunked = exchange -> {
+            upstreamCalls.incrementAndGet();
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            return exchange.getResponse().writeWith(Flux.range(0, 3)
+                    .map(i -> exchange.getResponse().bufferFactory().wrap(chunk)));
+        };
+        MockServerWebExchange first = get("/leaders");
+
+        // when
+        filter.filter(first, chunked).block();
+        filter.filter(get("/leaders"), chunked).block();
+
+        // then
+        then(first.getResponse().getBodyAsString().block()).hasSize(3 * 512);
+        then(upstreamCalls).hasValue(2);
+    }
+
+    @Test
+    public void responseVaryingByRequestHeaderIsNotCachedTest() {
+        // given
+        GatewayFilter filter = filter(Duration.ofMinutes(1), Duration.ZERO);
+        GatewayFilterChain varying = exchange -> {
+            exchange.getResponse().getHeaders().setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+            return upstream("[1]").filter(exchange);
+        };
+
+        // when
+        filter.filter(get("/leaders"), varying).block();
+        filter.filter(get("/leaders"), varying).block();
+
+        // then
+        then(upstreamCalls).hasValue(2);
+    }
+
+    @Test
+    public void responseVaryingOnlyByOriginIsCachedTest() {
+        // given - the CORS headers are added by the gateway to every response
+        GatewayFilter filter = filter(Duration.ofMinutes(1), Duration.ZERO);
+        GatewayFilterChain cors = exchange -> {
+            exchange.getResponse().getHeaders().setVary(List.of(HttpHeaders.ORIGIN));
+            return upstream("[1]").filter(exchange);
+        };
+
+        // when
+        filter.filter(get("/leaders"), cors).block();
+        filter.filter(get("/leaders"), cors).block();
+
+        // then
+        then(upstreamCalls).hasValue(1);
+    }
+
+    private GatewayFilter filter(final Duration timeToLive, final Duration staleWhileRevalidate) {
+        ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config();
+        config.setTimeToLive(timeToLive);
+        config.setStaleWhileRevalidate(staleWhileRevalidate);
+        return factory.apply(config);
+    }
+
+    private static MockServerWebExchange get(final String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path)
+                .localAddress(new InetSocketAddress("127.0.0.1", 8000)));
+    }
+
+    private GatewayFilterChain upstream(final String body) {
+        return upstream(HttpStatus.OK, body);
+    }
+
+    private GatewayFilterChain upstream(final HttpStatus status, final String body) {
+        return exchange -> {
+            upstreamCalls.incrementAndGet();
+            exchange.getResponse().setStatusCode(status);
+            exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            return exchange.getResponse().writeWith(
+                    Mono.just(exchange.getResponse().bufferFactory().wrap(bytes)));
+        };
+    }
+}
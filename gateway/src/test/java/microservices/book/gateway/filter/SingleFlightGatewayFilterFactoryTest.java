@@ -0,0 +1,131 @@
+package microservices.book.gateway.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class SingleFlightGatewayFilterFactoryTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+    private GatewayFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new SingleFlightGatewayFilterFactory(meterRegistry, DataSize.ofKilobytes(1)).apply(new Object());
+    }
+
+    @Test
+    public void concurrentRequestsShareOneUpstreamCallTest() {
+        // given a service that hasn't answered yet
+        Sinks.Empty<Void> answer = Sinks.empty();
+        MockServerWebExchange first = get("/leaders");
+        MockServerWebExchange second = get("/leaders");
+        MockServerWebExchange third = get("/leaders");
+        Mono<Void> firstDone = filter.filter(first, upstream("[1]", answer)).cache();
+        firstDone.subscribe();
+
+        // when
+        Mono<Void> secondDone = filter.filter(second, upstream("[2]", answer)).cache();
+        Mono<Void> thirdDone = filter.filter(third, upstream("[3]", answer)).cache();
+        secondDone.subscribe();
+        thirdDone.subscribe();
+        answer.tryEmitEmpty();
+        Mono.when(firstDone, secondDone, thirdDone).block();
+
+        // then
+        then(upstreamCalls).hasValue(1);
+        then(first.getResponse().getBodyAsString().block()).isEqualTo("[1]");
+        then(second.getResponse().getBodyAsString().block()).isEqualTo("[1]");
+        then(third.getResponse().getBodyAsString().block()).isEqualTo("[1]");
+        then(third.getResponse().getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        then(meterRegistry.get("gateway.single-flight.requests").tag("role", "follower").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void nothingIsKeptOnceTheResponseArrivesTest() {
+        // when
+        filter.filter(get("/leaders"), upstream("[1]", null)).block();
+        MockServerWebExchange second = get("/leaders");
+        filter.filter(second, upstream("[2]", null)).block();
+
+        // then
+        then(upstreamCalls).hasValue(2);
+        then(second.getResponse().getBodyAsString().block()).isEqualTo("[2]");
+        then(meterRegistry.get("gateway.single-flight.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    public void followersSendTheirOwnRequestIfTheLeaderFailsTest() {
+        // given
+        Sinks.Empty<Void> failure = Sinks.empty();
+        Mono<Void> firstDone = filter.filter(get("/leaders"), exchange -> {
+            upstreamCalls.incrementAndGet();
+            return failure.asMono();
+        }).onErrorResume(e -> Mono.empty()).cache();
+        firstDone.subscribe();
+        MockServerWebExchange second = get("/leaders");
+        Mono<Void> secondDone = filter.filter(second, upstream("[2]", null)).cache();
+        secondDone.subscribe();
+
+        // when
+        failure.tryEmitError(new IllegalStateException("Connection refused"));
+        Mono.when(firstDone, secondDone).block();
+
+        // then
+        then(upstreamCalls).hasValue(2);
+        then(second.getResponse().getBodyAsString().block()).isEqualTo("[2]");
+    }
+
+    @Test
+    public void differentRequestsAreNotCollapsedTest() {
+        // given
+        Sinks.Empty<Void> answer = Sinks.empty();
+        Mono<Void> firstDone = filter.filter(get("/leaders?limit=5"), upstream("[1]", answer)).cache();
+        Mono<Void> secondDone = filter.filter(get("/leaders?limit=10"), upstream("[2]", answer)).cache();
+        firstDone.subscribe();
+        secondDone.subscribe();
+
+        // when
+        answer.tryEmitEmpty();
+        Mono.when(firstDone, secondDone).block();
+
+        // then
+        then(upstreamCalls).hasValue(2);
+    }
+
+    private static MockServerWebExchange get(final String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+    // Answers once the sink completes, if there is one
+    private GatewayFilterChain upstream(final String body, final Sinks.Empty<Void> answer) {
+        return exchange -> {
+            upstreamCalls.incrementAndGet();
+            Mono<Void> wait = answer != null ? answer.asMono() : Mono.empty();
+            return wait.then(Mono.defer(() -> {
+                exchange.getResponse().setStatusCode(HttpStatus.OK);
+                exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                return exchange.getResponse().writeWith(
+                        Mono.just(exchange.getResponse().bufferFactory().wrap(bytes)));
+            }));
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package microservices.book.gateway.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.assertj.core.api.BDDAssertions.within;
+
+public class InstanceStatsTest {
+
+    private static final long DECAY = TimeUnit.SECONDS.toNanos(10);
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final InstanceStats stats = new InstanceStats(DECAY);
+
+    @Test
+    public void slowResponseRaisesTheLatencyAtOnceTest() {
+        // given
+        long now = DECAY;
+        respond(10 * MS, now);
+
+        // when
+        respond(100 * MS, now + MS);
+
+        // then
+        then(stats.latency(now + MS)).isCloseTo(100 * MS, within((double) MS));
+    }
+
+    @Test
+    public void fastResponsesLowerTheLatencyGraduallyTest() {
+        // given
+        long now = DECAY;
+        respond(100 * MS, now);
+
+        // when
+        respond(10 * MS, now + DECAY / 10);
+
+        // then
+        double latency = stats.latency(now + DECAY / 10);
+        then(latency).isLessThan(100 * MS).isGreaterThan(10 * MS);
+    }
+
+    @Test
+    public void latencyDecaysWithoutResponsesTest() {
+        // given
+        long now = DECAY;
+        respond(100 * MS, now);
+
+        // when
+        double later = stats.latency(now + DECAY);
+
+        // then
+        then(later).isCloseTo(100 * MS / Math.E, within((double) MS));
+    }
+
+    @Test
+    public void costGrowsWithRequestsInFlightTest() {
+        // given
+        long now = DECAY;
+        respond(10 * MS, now);
+        double idle = stats.cost(now);
+
+        // when
+        stats.start();
+        stats.start();
+
+        // then
+        then(stats.cost(now)).isEqualTo(idle * 3);
+        then(stats.getInFlight()).isEqualTo(2);
+        then(stats.getRequests()).isEqualTo(3);
+    }
+
+    @Test
+    public void failuresAreCountedTest() {
+        // when
+        stats.start();
+        stats.end(MS, true, DECAY);
+
+        // then
+        then(stats.getFailures()).isEqualTo(1);
+        then(stats.getInFlight()).isZero();
+    }
+
+    private void respond(final long latency, final long now) {
+        stats.start();
+        stats.end(latency, false, now);
+    }
+}
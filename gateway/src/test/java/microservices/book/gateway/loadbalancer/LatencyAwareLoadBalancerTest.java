@@ -0,0 +1,93 @@
+package microservices.book.gateway.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.Mockito.mock;
+
+public class LatencyAwareLoadBalancerTest {
+
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<ServiceInstanceListSupplier> provider = mock(ObjectProvider.class);
+    private final LoadBalancerStats stats = new LoadBalancerStats(Duration.ofSeconds(10));
+    private final LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(provider, stats);
+
+    private final ServiceInstance fast = instance(1);
+    private final ServiceInstance slow = instance(2);
+
+    @Test
+    public void choosesTheFasterOfTwoTest() {
+        // given
+        respond(fast, 10);
+        respond(slow, 200);
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            // then
+            then(loadBalancer.choose(List.of(fast, slow)).getServer()).isEqualTo(fast);
+        }
+    }
+
+    @Test
+    public void avoidsTheBusyInstanceTest() {
+        // given the fast one has many requests waiting
+        respond(fast, 10);
+        respond(slow, 20);
+        for (int i = 0; i < 10; i++) {
+            stats.of(fast).start();
+        }
+
+        // when
+        Response<ServiceInstance> response = loadBalancer.choose(List.of(fast, slow));
+
+        // then
+        then(response.getServer()).isEqualTo(slow);
+    }
+
+    @Test
+    public void spreadsTheLoadAmongSimilarInstancesTest() {
+        // given
+        List<ServiceInstance> instances = List.of(instance(1), instance(2), instance(3), instance(4));
+        Map<ServiceInstance, Integer> chosen = new HashMap<>();
+
+        // when the chosen requests never finish
+        for (int i = 0; i < 400; i++) {
+            ServiceInstance instance = loadBalancer.choose(instances).getServer();
+            stats.of(instance).start();
+            chosen.merge(instance, 1, Integer::sum);
+        }
+
+        // then
+        then(chosen).hasSize(4);
+        then(chosen.values()).allSatisfy(count -> then(count).isBetween(90, 110));
+    }
+
+    @Test
+    public void noInstancesTest() {
+        // when
+        Response<ServiceInstance> response = loadBalancer.choose(List.of());
+
+        // then
+        then(response.hasServer()).isFalse();
+    }
+
+    private void respond(final ServiceInstance instance, final long latencyMs) {
+        InstanceStats instanceStats = stats.of(instance);
+        instanceStats.start();
+        instanceStats.end(Duration.ofMillis(latencyMs).toNanos(), false, System.nanoTime());
+    }
+
+    private static ServiceInstance instance(final int n) {
+        return new DefaultServiceInstance("multiplication-" + n, "multiplication", "host" + n, 8080, false);
+    }
+}
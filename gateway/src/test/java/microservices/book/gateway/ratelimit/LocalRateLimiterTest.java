@@ -0,0 +1,73 @@
+package microservices.book.gateway.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class LocalRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // 1 request per second, bursts of 2
+    private final LocalRateLimiter rateLimiter = new LocalRateLimiter(null, meterRegistry,
+            1, 2, 1000, Duration.ofMinutes(10));
+
+    @Test
+    public void requestsOverTheBurstAreDeniedWithRetryAfterTest() {
+        // when
+        RateLimiter.Response first = isAllowed("alias:john");
+        isAllowed("alias:john");
+        RateLimiter.Response denied = isAllowed("alias:john");
+
+        // then
+        then(first.isAllowed()).isTrue();
+        then(first.getHeaders())
+                .containsEntry(LocalRateLimiter.REMAINING_HEADER, "1")
+                .containsEntry(LocalRateLimiter.BURST_CAPACITY_HEADER, "2")
+                .doesNotContainKey(HttpHeaders.RETRY_AFTER);
+        then(denied.isAllowed()).isFalse();
+        then(denied.getHeaders())
+                .containsEntry(LocalRateLimiter.REMAINING_HEADER, "0")
+                .containsEntry(HttpHeaders.RETRY_AFTER, "1");
+        then(meterRegistry.get("gateway.rate-limiter.requests").tag("result", "denied").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void everyKeyHasItsOwnBucketTest() {
+        // given
+        isAllowed("alias:john");
+        isAllowed("alias:john");
+
+        // when
+        RateLimiter.Response other = isAllowed("alias:jane");
+
+        // then
+        then(isAllowed("alias:john").isAllowed()).isFalse();
+        then(other.isAllowed()).isTrue();
+    }
+
+    @Test
+    public void routeConfigOverridesTheDefaultTest() {
+        // given
+        LocalRateLimiter.Config config = new LocalRateLimiter.Config();
+        config.setReplenishRate(1);
+        config.setBurstCapacity(1);
+        rateLimiter.getConfig().put("multiplication", config);
+
+        // when
+        isAllowed("alias:john");
+        RateLimiter.Response second = isAllowed("alias:john");
+
+        // then
+        then(second.isAllowed()).isFalse();
+    }
+
+    private RateLimiter.Response isAllowed(final String key) {
+        return rateLimiter.isAllowed("multiplication", key).block();
+    }
+}
@@ -0,0 +1,74 @@
+package microservices.book.gateway.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class TokenBucketTest {
+
+    // 10 tokens per second
+    private static final long PER_TOKEN = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int CAPACITY = 5;
+
+    private final TokenBucket bucket = new TokenBucket();
+
+    @Test
+    public void burstUpToCapacityIsAllowedTest() {
+        // when
+        TokenBucket.Result last = null;
+        for (int i = 0; i < CAPACITY; i++) {
+            last = bucket.take(1, PER_TOKEN, CAPACITY, 0);
+        }
+
+        // then
+        then(last.allowed()).isTrue();
+        then(last.remaining()).isZero();
+    }
+
+    @Test
+    public void requestOverCapacityIsRejectedUntilNextTokenTest() {
+        // given
+        for (int i = 0; i < CAPACITY; i++) {
+            bucket.take(1, PER_TOKEN, CAPACITY, 0);
+        }
+
+        // when
+        TokenBucket.Result rejected = bucket.take(1, PER_TOKEN, CAPACITY, PER_TOKEN / 2);
+        TokenBucket.Result later = bucket.take(1, PER_TOKEN, CAPACITY, PER_TOKEN);
+
+        // then
+        then(rejected.allowed()).isFalse();
+        then(rejected.retryAfterNanos()).isEqualTo(PER_TOKEN / 2);
+        then(later.allowed()).isTrue();
+    }
+
+    @Test
+    public void idleBucketRefillsOnlyUpToCapacityTest() {
+        // given
+        bucket.take(CAPACITY, PER_TOKEN, CAPACITY, 0);
+
+        // when
+        TokenBucket.Result result = bucket.take(1, PER_TOKEN, CAPACITY, 100 * PER_TOKEN);
+
+        // then
+        then(result.allowed()).isTrue();
+        then(result.remaining()).isEqualTo(CAPACITY - 1);
+    }
+
+    @Test
+    public void rejectedRequestDoesNotTakeTokensTest() {
+        // given
+        bucket.take(CAPACITY - 1, PER_TOKEN, CAPACITY, 0);
+
+        // when
+        TokenBucket.Result rejected = bucket.take(2, PER_TOKEN, CAPACITY, 0);
+        TokenBucket.Result allowed = bucket.take(1, PER_TOKEN, CAPACITY, 0);
+
+        // then
+        then(rejected.allowed()).isFalse();
+        then(rejected.remaining()).isEqualTo(1);
+        then(allowed.allowed()).isTrue();
+    }
+}
@@ -0,0 +1,33 @@
+package microservices.book.loadtest;
+
+import microservices.book.multiplication.challenge.ChallengeAttempt;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Added to the Multiplication context to record when the correct attempts are
+ * committed. It goes before the transaction advice, so it runs once the
+ * transaction is committed (but after Spring's ExposeInvocationInterceptor,
+ * which AspectJ needs to bind the arguments).
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+class AttemptCommittedProbe {
+
+    private final CommitLag commitLag;
+
+    AttemptCommittedProbe(final CommitLag commitLag) {
+        this.commitLag = commitLag;
+    }
+
+    @AfterReturning(pointcut = "execution(* microservices.book.multiplication.challenge.ChallengeService.verifyAttempt(..))",
+            returning = "attempt")
+    public void attemptCommitted(final ChallengeAttempt attempt) {
+        // Only the correct attempts get to the leader board
+        if (attempt.isCorrect()) {
+            commitLag.attemptCommitted(attempt.getId());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package microservices.book.loadtest;
+
+import microservices.book.gamification.challenge.ChallengeSolvedEvent;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.util.List;
+
+/**
+ * Added to the Gamification context to record when the attempts are scored,
+ * in single or batch listener mode. Like {@link AttemptCommittedProbe}, it
+ * runs after the transaction commits, when the leader board has been updated.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+class AttemptScoredProbe {
+
+    private final CommitLag commitLag;
+
+    AttemptScoredProbe(final CommitLag commitLag) {
+        this.commitLag = commitLag;
+    }
+
+    @AfterReturning("execution(* microservices.book.gamification.game.GameService.newAttemptForUser(..)) && args(event)")
+    public void attemptScored(final ChallengeSolvedEvent event) {
+        commitLag.attemptScored(event.getAttemptId());
+    }
+
+    @AfterReturning("execution(* microservices.book.gamification.game.GameService.newAttempts(..)) && args(events)")
+    public void attemptsScored(final List<ChallengeSolvedEvent> events) {
+        events.forEach(event -> commitLag.attemptScored(event.getAttemptId()));
+    }
+}
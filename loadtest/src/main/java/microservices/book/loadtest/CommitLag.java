@@ -0,0 +1,86 @@
+package microservices.book.loadtest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the time between the commit of a correct attempt in Multiplication
+ * and the moment Gamification has scored it, which is when it's visible in
+ * the leader board.
+ * It's shared by the probes of both services, so both sides use the same
+ * clock.
+ */
+class CommitLag {
+
+    // Marks an attempt scored before its commit was recorded
+    private static final long SCORED = Long.MIN_VALUE;
+
+    private final Map<Long, Long> committedAt = new ConcurrentHashMap<>();
+    private final Latencies lags = new Latencies();
+    private volatile boolean measuring;
+
+    void startMeasuring() {
+        measuring = true;
+    }
+
+    void stopMeasuring() {
+        measuring = false;
+    }
+
+    void attemptCommitted(final long attemptId) {
+        if (!measuring) {
+            return;
+        }
+        long now = System.nanoTime();
+        // The event might be processed before this probe runs
+        Long previous = committedAt.putIfAbsent(attemptId, now);
+        if (previous != null && previous == SCORED) {
+            committedAt.remove(attemptId);
+            record(0);
+        }
+    }
+
+    void attemptScored(final long attemptId) {
+        long now = System.nanoTime();
+        Long committed = committedAt.remove(attemptId);
+        if (committed != null) {
+            record(now - committed);
+        } else if (measuring) {
+            committedAt.putIfAbsent(attemptId, SCORED);
+        }
+    }
+
+    /**
+     * Waits until all the committed attempts have been scored.
+     *
+     * @return false if there were still attempts pending after the timeout
+     */
+    boolean awaitScored(final Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        return pending() == 0;
+    }
+
+    long pending() {
+        return committedAt.values().stream().filter(at -> at != SCORED).count();
+    }
+
+    /**
+     * @return the lags recorded so far, sorted
+     */
+    Latencies lags() {
+        synchronized (lags) {
+            return Latencies.merge(List.of(lags));
+        }
+    }
+
+    private void record(final long nanos) {
+        synchronized (lags) {
+            lags.record(nanos);
+        }
+    }
+}
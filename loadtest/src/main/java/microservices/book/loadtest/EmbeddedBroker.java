@@ -0,0 +1,54 @@
+package microservices.book.loadtest;
+
+import org.apache.qpid.server.SystemLauncher;
+import org.apache.qpid.server.model.SystemConfig;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AMQP 0-9-1 broker (Apache Qpid Broker-J) running inside the JVM, so the
+ * services can publish and consume events without a RabbitMQ server.
+ * The messages are kept in memory and the broker accepts the guest/guest
+ * credentials that Spring Boot uses by default.
+ */
+class EmbeddedBroker implements AutoCloseable {
+
+    private final SystemLauncher launcher = new SystemLauncher();
+    private final int port;
+
+    private EmbeddedBroker(final int port) {
+        this.port = port;
+    }
+
+    static EmbeddedBroker start() throws Exception {
+        EmbeddedBroker broker = new EmbeddedBroker(freePort());
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(SystemConfig.TYPE, "Memory");
+        attributes.put(SystemConfig.INITIAL_CONFIGURATION_LOCATION,
+                EmbeddedBroker.class.getResource("/embedded-broker.json").toExternalForm());
+        attributes.put(SystemConfig.INITIAL_SYSTEM_PROPERTIES_LOCATION,
+                EmbeddedBroker.class.getResource("/embedded-broker.properties").toExternalForm());
+        attributes.put(SystemConfig.CONTEXT, Map.of("qpid.amqp_port", broker.port));
+        attributes.put(SystemConfig.STARTUP_LOGGED_TO_SYSTEM_OUT, false);
+        broker.launcher.startup(attributes);
+        return broker;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        launcher.shutdown();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
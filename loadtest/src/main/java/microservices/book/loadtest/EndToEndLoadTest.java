@@ -0,0 +1,89 @@
+package microservices.book.loadtest;
+
+import microservices.book.gamification.GamificationApplication;
+import microservices.book.multiplication.MultiplicationApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs Multiplication and Gamification in this JVM, connected through an
+ * embedded AMQP broker and without Consul, and sends POST /attempts at a fixed
+ * rate. It reports the throughput and the latency percentiles of the requests,
+ * and the lag between the commit of each correct attempt and the moment it's
+ * scored and visible in the leader board.
+ * <p>
+ * Each service has its own in-memory H2 database and random HTTP port, with
+ * the settings in loadtest-multiplication.properties and
+ * loadtest-gamification.properties. Options with a dot in the name are passed
+ * to both services, e.g. --amqp.listener.mode=batch.
+ * <pre>
+ * java -jar loadtest.jar --rate=500 --duration=60s --warmup=10s
+ * </pre>
+ */
+public class EndToEndLoadTest {
+
+    public static void main(final String[] args) throws Exception {
+        // The services would be restarted by DevTools when run from an IDE
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Options options = new Options(args);
+        double rate = options.getDouble("rate", 100);
+        int users = options.getInt("users", 1000);
+        Duration warmup = options.getDuration("warmup", "10s");
+        Duration duration = options.getDuration("duration", "30s");
+        Duration drainTimeout = options.getDuration("drain-timeout", "30s");
+        String label = options.get("label", "in-process");
+
+        CommitLag commitLag = new CommitLag();
+        try (EmbeddedBroker broker = EmbeddedBroker.start();
+             ConfigurableApplicationContext gamification = start(GamificationApplication.class,
+                     AttemptScoredProbe.class, "loadtest-gamification", broker, commitLag, options);
+             ConfigurableApplicationContext multiplication = start(MultiplicationApplication.class,
+                     AttemptCommittedProbe.class, "loadtest-multiplication", broker, commitLag, options)) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            Scenario attempts = Scenario.postAttempts("http://localhost:" +
+                    multiplication.getEnvironment().getProperty("local.server.port"), users);
+
+            System.out.printf("Warming up at %.0f req/s for %ds%n", rate, warmup.toSeconds());
+            OpenLoopDriver.run(client, attempts, rate, warmup, "warmup");
+            System.out.printf("Running %s at %.0f req/s for %ds%n",
+                    attempts.name(), rate, duration.toSeconds());
+            commitLag.startMeasuring();
+            Result result = OpenLoopDriver.run(client, attempts, rate, duration, label);
+            commitLag.stopMeasuring();
+            if (!commitLag.awaitScored(drainTimeout)) {
+                System.out.printf("Some attempts were not scored after %ds%n", drainTimeout.toSeconds());
+            }
+
+            Report.print(List.of(result), System.out);
+            Report.printLag(commitLag.lags(), commitLag.pending(), System.out);
+            if (options.has("csv")) {
+                Report.appendCsv(List.of(result), Path.of(options.get("csv", null)));
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(final Class<?> application,
+                                                        final Class<?> probe,
+                                                        final String configName,
+                                                        final EmbeddedBroker broker,
+                                                        final CommitLag commitLag,
+                                                        final Options options) {
+        String[] args = Stream.concat(
+                Stream.of("--spring.config.name=" + configName,
+                        "--spring.rabbitmq.port=" + broker.getPort()),
+                Stream.of(options.springArguments())).toArray(String[]::new);
+        return new SpringApplicationBuilder(application, probe)
+                .initializers(context -> context.getBeanFactory()
+                        .registerSingleton("commitLag", commitLag))
+                .run(args);
+    }
+}
@@ -0,0 +1,54 @@
+package microservices.book.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of the requests sent by a worker, in nanoseconds.
+ * Every worker has its own instance, so recording doesn't need any
+ * synchronization; they're merged at the end of the run to calculate the
+ * percentiles.
+ */
+class Latencies {
+
+    private long[] values = new long[1024];
+    private int count;
+
+    void record(final long nanos) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+        }
+        values[count++] = nanos;
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return a new instance with the latencies of all the given ones, sorted
+     */
+    static Latencies merge(final Iterable<Latencies> all) {
+        Latencies merged = new Latencies();
+        for (Latencies latencies : all) {
+            for (int i = 0; i < latencies.count; i++) {
+                merged.record(latencies.values[i]);
+            }
+        }
+        Arrays.sort(merged.values, 0, merged.count);
+        return merged;
+    }
+
+    /**
+     * Only valid on merged (sorted) instances.
+     *
+     * @param percentile a number between 0 and 1, e.g. 0.99 for the p99
+     * @return the latency in milliseconds, 0 if there are no latencies
+     */
+    double percentileMillis(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return values[Math.max(index, 0)] / 1_000_000.0;
+    }
+}
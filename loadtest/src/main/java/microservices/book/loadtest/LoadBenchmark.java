@@ -0,0 +1,119 @@
+package microservices.book.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends load to POST /attempts and GET /leaders of running services and
+ * reports the throughput and the latency percentiles of each endpoint.
+ * <p>
+ * It's a closed-loop benchmark: every worker sends a request, waits for the
+ * response and sends the next one, so the concurrency is the number of
+ * requests in flight. The first seconds are a warm-up and they're not
+ * measured.
+ * <p>
+ * To compare the thread modes of the services, start them with
+ * SPRING_THREADS_VIRTUAL_ENABLED=false, run the benchmark with
+ * --label=platform, then restart them with SPRING_THREADS_VIRTUAL_ENABLED=true
+ * and run it again with --label=virtual. The services are built for Java 17,
+ * but the virtual threads need them to run on a Java 21 or newer JVM (not
+ * the openjdk:17 images of the Dockerfiles): on an older one they refuse to
+ * start with virtual threads enabled, so the comparison can't be faked. With
+ * --csv=results.csv both runs are appended to the same file.
+ * <pre>
+ * java -Dloader.main=microservices.book.loadtest.LoadBenchmark -jar loadtest.jar --concurrency=200 --duration=60s --label=platform
+ * </pre>
+ */
+public class LoadBenchmark {
+
+    public static void main(final String[] args) throws Exception {
+        Options options = new Options(args);
+        String multiplicationUrl = options.get("multiplication", "http://localhost:8080");
+        String gamificationUrl = options.get("gamification", "http://localhost:8081");
+        int concurrency = options.getInt("concurrency", 64);
+        int users = options.getInt("users", 1000);
+        Duration warmup = options.getDuration("warmup", "5s");
+        Duration duration = options.getDuration("duration", "30s");
+        String label = options.get("label", "default");
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        List<Result> results = new ArrayList<>();
+        for (Scenario scenario : List.of(
+                Scenario.postAttempts(multiplicationUrl, users),
+                Scenario.getLeaders(gamificationUrl))) {
+            System.out.printf("Running %s with %d workers for %ds%n",
+                    scenario.name(), concurrency, duration.toSeconds());
+            results.add(run(client, scenario, concurrency, warmup, duration, label));
+        }
+
+        Report.print(results, System.out);
+        if (options.has("csv")) {
+            Report.appendCsv(results, Path.of(options.get("csv", null)));
+        }
+    }
+
+    static Result run(final HttpClient client, final Scenario scenario,
+                      final int concurrency, final Duration warmup,
+                      final Duration duration, final String label) throws Exception {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Latencies>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(workers.submit(() -> {
+                    Latencies latencies = new Latencies();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        boolean ok = send(client, scenario, random);
+                        long finished = System.nanoTime();
+                        if (now >= measureFrom) {
+                            latencies.record(finished - now);
+                            if (!ok) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                    return latencies;
+                }));
+            }
+            List<Latencies> all = new ArrayList<>();
+            for (Future<Latencies> future : futures) {
+                all.add(future.get());
+            }
+            return new Result(label, scenario.name(), Latencies.merge(all),
+                    errors.get(), duration);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static boolean send(final HttpClient client, final Scenario scenario,
+                                final ThreadLocalRandom random) {
+        try {
+            HttpResponse<Void> response = client.send(scenario.nextRequest(random),
+                    HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 400;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package microservices.book.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed rate, no matter how long the responses take.
+ */
+/*
+ * Unlike the closed loop of LoadBenchmark, a slow response doesn't delay the
+ * next request, like with real users. The latency is measured from the time
+ * the request should have been sent, so if the driver itself falls behind,
+ * the wait is part of the latency too (this avoids the coordinated omission
+ * problem, where the slowest periods get the fewest samples).
+ */
+class OpenLoopDriver {
+
+    private static final Duration COMPLETION_TIMEOUT = Duration.ofSeconds(60);
+
+    private OpenLoopDriver() {
+    }
+
+    static Result run(final HttpClient client, final Scenario scenario, final double rate,
+                      final Duration duration, final String label) throws Exception {
+        long interval = Math.round(1_000_000_000 / rate);
+        Latencies latencies = new Latencies();
+        AtomicLong errors = new AtomicLong();
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long scheduled = start; scheduled < end; scheduled += interval) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long sendAt = scheduled;
+            requests.add(client.sendAsync(scenario.nextRequest(random),
+                            HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        long latency = System.nanoTime() - sendAt;
+                        synchronized (latencies) {
+                            latencies.record(latency);
+                        }
+                        if (error != null || response.statusCode() >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new))
+                .handle((ignored, error) -> null)
+                .get(COMPLETION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        synchronized (latencies) {
+            return new Result(label, scenario.name(), Latencies.merge(List.of(latencies)),
+                    errors.get(), duration);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package microservices.book.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The command line options of the load tests, given as --name=value.
+ */
+class Options {
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    Options(final String[] args) {
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Invalid option " + arg + ", expected --name=value");
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+    }
+
+    String get(final String name, final String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    boolean has(final String name) {
+        return values.containsKey(name);
+    }
+
+    int getInt(final String name, final int defaultValue) {
+        return has(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    double getDouble(final String name, final double defaultValue) {
+        return has(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+    }
+
+    // Accepts the simple forms used in the properties files: 500ms, 30s, 2m
+    Duration getDuration(final String name, final String defaultValue) {
+        String value = get(name, defaultValue);
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        } else if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        } else if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    /**
+     * @return the options with a dot in the name (e.g. --amqp.listener.mode=batch)
+     * as command line arguments for Spring Boot
+     */
+    String[] springArguments() {
+        return values.entrySet().stream()
+                .filter(e -> e.getKey().contains("."))
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+    }
+}
@@ -0,0 +1,53 @@
+package microservices.book.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prints the results as a table and, optionally, appends them to a CSV file
+ * so several runs can be compared.
+ */
+class Report {
+
+    private static final String HEADER = "label,scenario,requests,errors,throughput,p50,p99,p999";
+
+    private Report() {
+    }
+
+    static void print(final List<Result> results, final PrintStream out) {
+        out.printf("%-12s %-16s %10s %8s %10s %9s %9s %9s%n",
+                "label", "scenario", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+        results.forEach(r -> out.printf(Locale.ROOT,
+                "%-12s %-16s %10d %8d %10.1f %9.2f %9.2f %9.2f%n",
+                r.label(), r.scenario(), r.requests(), r.errors(), r.throughput(),
+                r.latencies().percentileMillis(0.50), r.latencies().percentileMillis(0.99),
+                r.latencies().percentileMillis(0.999)));
+    }
+
+    static void printLag(final Latencies lags, final long pending, final PrintStream out) {
+        out.printf(Locale.ROOT,
+                "commit -> leader board lag: %d scored, %d pending, " +
+                        "p50 %.2f ms, p99 %.2f ms, p999 %.2f ms, max %.2f ms%n",
+                lags.count(), pending, lags.percentileMillis(0.50),
+                lags.percentileMillis(0.99), lags.percentileMillis(0.999),
+                lags.percentileMillis(1.0));
+    }
+
+    static void appendCsv(final List<Result> results, final Path csv) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(csv)) {
+            lines.add(HEADER);
+        }
+        results.forEach(r -> lines.add(String.format(Locale.ROOT, "%s,%s,%d,%d,%.1f,%.2f,%.2f,%.2f",
+                r.label(), r.scenario(), r.requests(), r.errors(), r.throughput(),
+                r.latencies().percentileMillis(0.50), r.latencies().percentileMillis(0.99),
+                r.latencies().percentileMillis(0.999))));
+        Files.write(csv, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
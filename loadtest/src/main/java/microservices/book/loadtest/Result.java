@@ -0,0 +1,18 @@
+package microservices.book.loadtest;
+
+import java.time.Duration;
+
+/**
+ * The outcome of running a scenario.
+ */
+record Result(String label, String scenario, Latencies latencies,
+              long errors, Duration duration) {
+
+    long requests() {
+        return latencies.count();
+    }
+
+    double throughput() {
+        return requests() / (duration.toMillis() / 1000.0);
+    }
+}
@@ -0,0 +1,60 @@
+package microservices.book.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A type of request sent during the benchmark.
+ */
+interface Scenario {
+
+    String name();
+
+    HttpRequest nextRequest(ThreadLocalRandom random);
+
+    /**
+     * Sends correct and wrong attempts for a pool of users, so the
+     * Gamification service gets events to process in the background too.
+     */
+    static Scenario postAttempts(final String multiplicationUrl, final int users) {
+        URI uri = URI.create(multiplicationUrl + "/attempts");
+        return new Scenario() {
+            @Override
+            public String name() {
+                return "POST /attempts";
+            }
+
+            @Override
+            public HttpRequest nextRequest(final ThreadLocalRandom random) {
+                int factorA = random.nextInt(11, 100);
+                int factorB = random.nextInt(11, 100);
+                int guess = random.nextBoolean() ? factorA * factorB : factorA * factorB + 1;
+                String body = String.format(
+                        "{\"factorA\":%d,\"factorB\":%d,\"userAlias\":\"load_user_%d\",\"guess\":%d}",
+                        factorA, factorB, random.nextInt(users), guess);
+                return HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+            }
+        };
+    }
+
+    static Scenario getLeaders(final String gamificationUrl) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(gamificationUrl + "/leaders"))
+                .GET()
+                .build();
+        return new Scenario() {
+            @Override
+            public String name() {
+                return "GET /leaders";
+            }
+
+            @Override
+            public HttpRequest nextRequest(final ThreadLocalRandom random) {
+                return request;
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package microservices.book.multiplication.challenge;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * The Idempotency-Key sent by a client with an attempt, and the attempt it
+ * created. If the same attempt is sent again with the same key (e.g. retried
+ * by the gateway after a timeout), the stored attempt is returned instead of
+ * creating a new one.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AttemptIdempotencyKey implements Persistable<String> {
+    @Id
+    private String idempotencyKey;
+    private Long attemptId;
+    private long createdTimestamp;
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    /*
+     * Keys are only inserted, never updated: saving a key that already exists
+     * must fail with the primary key, not overwrite the attempt of the other one.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -0,0 +1,42 @@
+package microservices.book.multiplication.challenge;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * Deletes the idempotency keys older than attempts.idempotency.ttl, every
+ * attempts.idempotency.purge-interval-ms milliseconds. A client that sends an
+ * attempt again after that gets a new attempt.
+ */
+@Slf4j
+@Component
+class AttemptIdempotencyKeyPurge {
+
+    private final AttemptIdempotencyKeyRepository keyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+
+    AttemptIdempotencyKeyPurge(final AttemptIdempotencyKeyRepository keyRepository,
+                               final TransactionTemplate transactionTemplate,
+                               @Value("${attempts.idempotency.ttl:24h}") final Duration ttl) {
+        this.keyRepository = keyRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+    }
+
+    @Scheduled(fixedDelayString = "${attempts.idempotency.purge-interval-ms:3600000}")
+    public void purge() {
+        try {
+            Integer deleted = transactionTemplate.execute(status ->
+                    keyRepository.deleteCreatedBefore(System.currentTimeMillis() - ttl.toMillis()));
+            log.debug("Deleted {} expired idempotency keys", deleted);
+        } catch (final Exception e) {
+            log.error("Error when deleting the expired idempotency keys", e);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package microservices.book.multiplication.challenge;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface AttemptIdempotencyKeyRepository extends CrudRepository<AttemptIdempotencyKey, String> {
+
+    /**
+     * Deletes the keys stored before the given time with a single statement.
+     *
+     * @param createdTimestamp the epoch millis of the oldest key to keep
+     * @return the number of keys deleted
+     */
+    @Modifying
+    @Query("DELETE FROM AttemptIdempotencyKey k WHERE k.createdTimestamp < :createdTimestamp")
+    int deleteCreatedBefore(@Param("createdTimestamp") final long createdTimestamp);
+}
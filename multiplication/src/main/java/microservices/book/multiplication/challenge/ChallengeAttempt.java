@@ -5,6 +5,7 @@ import microservices.book.multiplication.user.User;
 import jakarta.persistence.*;
 
 @Entity
+@Table(indexes = @Index(name = "idx_challenge_attempt_user_id", columnList = "USER_ID, id"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -5,13 +5,17 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.validation.Valid;
 
@@ -23,18 +27,55 @@ import jakarta.validation.Valid;
 @RestController
 @RequestMapping("/attempts")
 public class ChallengeAttemptController {
+    // The length of the column where the keys are stored
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final ChallengeService challengeService;
 
+    @Value("${attempts.page.max-size:100}")
+    private int maxPageSize;
+
+    /*
+     * With an Idempotency-Key, sending the same attempt again returns the
+     * attempt already stored, so the gateway can retry it safely. Reusing the
+     * key for a different attempt is rejected with a 422.
+     */
     @PostMapping
-    ResponseEntity<ChallengeAttempt> postResult(@RequestBody @Valid ChallengeAttemptDTO challengeAttemptDTO) {
+    ResponseEntity<ChallengeAttempt> postResult(@RequestBody @Valid ChallengeAttemptDTO challengeAttemptDTO,
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
         log.info("Received new attempt from {}", challengeAttemptDTO.getUserAlias());
-        return ResponseEntity.ok(challengeService.verifyAttempt(challengeAttemptDTO));
+        if (idempotencyKey != null
+                && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must have between 1 and " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        try {
+            return ResponseEntity.ok(challengeService.verifyAttempt(challengeAttemptDTO, idempotencyKey));
+        } catch (IdempotencyKeyConflictException e) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+        }
     }
 
+    /*
+     * Without before and size, it returns the last attempts as before. Older
+     * attempts are requested with the id of the last attempt already received
+     * as before, so the database goes straight to them with its index.
+     */
     @GetMapping
     ResponseEntity<List<ChallengeAttempt>> getStatistics(
-            @RequestParam("alias") String alias) {
+            @RequestParam("alias") String alias,
+            @RequestParam(name = "before", required = false) Long before,
+            @RequestParam(name = "size", required = false) Integer size) {
+        if (before == null && size == null) {
+            return ResponseEntity.ok(
+                    challengeService.getStatsForUser(alias));
+        }
+        int pageSize = size != null ? size : maxPageSize;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "size must be between 1 and " + maxPageSize);
+        }
         return ResponseEntity.ok(
-                challengeService.getStatsForUser(alias));
+                challengeService.getAttemptsForUser(alias, before, pageSize));
     }
 }
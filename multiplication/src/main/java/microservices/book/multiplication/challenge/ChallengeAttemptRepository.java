@@ -1,9 +1,12 @@
 package microservices.book.multiplication.challenge;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import java.util.List;
+import java.util.Optional;
 
 public interface ChallengeAttemptRepository extends CrudRepository<ChallengeAttempt, Long> {
     /**
@@ -11,6 +14,26 @@ public interface ChallengeAttemptRepository extends CrudRepository<ChallengeAtte
      */
     List<ChallengeAttempt> findTop10ByUserAliasOrderByIdDesc(String userAlias);
 
+    /**
+     * @return the last attempts of a user, with their user, up to the limit.
+     */
+    @EntityGraph(attributePaths = "user")
+    List<ChallengeAttempt> findByUserAliasOrderByIdDesc(String userAlias, Limit limit);
+
+    /**
+     * @return the attempts of a user older than the given attempt id, with
+     * their user, newest first and up to the limit. It's served by the index
+     * on the user and the id of the attempts.
+     */
+    @EntityGraph(attributePaths = "user")
+    List<ChallengeAttempt> findByUserAliasAndIdLessThanOrderByIdDesc(String userAlias, Long id, Limit limit);
+
+    /**
+     * @return the attempt with the given id, with its user.
+     */
+    @EntityGraph(attributePaths = "user")
+    Optional<ChallengeAttempt> findWithUserById(Long id);
+
     /**
      * @return the last attempts for a given user, identified by their alias.
      */
@@ -2,7 +2,9 @@ package microservices.book.multiplication.challenge;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 /**
  * This class implements a REST API to get random challenges
@@ -14,9 +16,19 @@ import org.springframework.web.bind.annotation.*;
 class ChallengeController {
     private final ChallengeGeneratorService challengeGeneratorService;
 
+    /*
+     * The difficulty and the alias of the user are optional, and only the
+     * pool of challenges takes them into account (challenges.generator.mode=pool).
+     */
     @GetMapping("/random")
-    Challenge getRandomChallenge() {
-        Challenge challenge = challengeGeneratorService.randomChallenge();
+    Challenge getRandomChallenge(@RequestParam(name = "difficulty", required = false) final Integer difficulty,
+                                 @RequestParam(name = "alias", required = false) final String alias) {
+        Challenge challenge;
+        try {
+            challenge = challengeGeneratorService.randomChallenge(difficulty, alias);
+        } catch (final IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
         log.info("Generating a random challenge: {}", challenge);
         return challenge;
     }
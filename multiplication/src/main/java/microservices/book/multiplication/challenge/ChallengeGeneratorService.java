@@ -6,4 +6,17 @@ public interface ChallengeGeneratorService {
      *         11 and 99
      */
     Challenge randomChallenge();
+
+    /**
+     * @param difficulty the difficulty level, from 1 (easiest) up to the
+     *                   number of levels, or null for any
+     * @param userAlias  the user that will solve it, so they don't get the
+     *                   same challenges again, or null if unknown
+     * @return a randomly generated challenge. The implementations that don't
+     *         support difficulty levels or users ignore them
+     * @throws IllegalArgumentException if the difficulty level doesn't exist
+     */
+    default Challenge randomChallenge(final Integer difficulty, final String userAlias) {
+        return randomChallenge();
+    }
 }
\ No newline at end of file
@@ -1,16 +1,23 @@
 package microservices.book.multiplication.challenge;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import java.util.Random;
 
+/**
+ * Generates the challenges with a single Random shared by all the requests.
+ * This is the default mode, see {@link ThreadLocalChallengeGeneratorService}
+ * and {@link PooledChallengeGeneratorService} for the other ones.
+ */
 @Service
+@ConditionalOnProperty(name = "challenges.generator.mode", havingValue = "random", matchIfMissing = true)
 public class ChallengeGeneratorServiceImpl implements
         ChallengeGeneratorService {
 
     private final Random random;
     
-    private final static int MINIMUM_FACTOR = 11;
-    private final static int MAXIMUM_FACTOR = 100;
+    final static int MINIMUM_FACTOR = 11;
+    final static int MAXIMUM_FACTOR = 100;
 
     ChallengeGeneratorServiceImpl() {
         this.random = new Random();
@@ -10,7 +10,21 @@ public interface ChallengeService {
      * 
      * @return the resulting ChallengeAttempt object
      */
-    ChallengeAttempt verifyAttempt(ChallengeAttemptDTO resultAttempt);
+    default ChallengeAttempt verifyAttempt(ChallengeAttemptDTO resultAttempt) {
+        return verifyAttempt(resultAttempt, null);
+    }
+
+    /**
+     * Verifies an attempt only once for the same idempotency key: if an
+     * attempt was already stored with the key, it's returned as it is.
+     *
+     * @param idempotencyKey the key sent by the client, or null to always
+     *                       store a new attempt
+     * @return the resulting ChallengeAttempt object, or the one stored before
+     * @throws IdempotencyKeyConflictException if the key was used for a
+     *                                         different attempt
+     */
+    ChallengeAttempt verifyAttempt(ChallengeAttemptDTO resultAttempt, String idempotencyKey);
 
     /**
      * Gets the statistics for a given user.
@@ -21,4 +35,15 @@ public interface ChallengeService {
      *         objects created by the user.
      */
     List<ChallengeAttempt> getStatsForUser(String userAlias);
+
+    /**
+     * Gets a page of the attempts of a user, newest first.
+     *
+     * @param userAlias the user's alias
+     * @param before    the id of the last attempt of the previous page, or
+     *                  null for the first page
+     * @param size      the maximum number of attempts
+     * @return the attempts of the user older than before
+     */
+    List<ChallengeAttempt> getAttemptsForUser(String userAlias, Long before, int size);
 }
\ No newline at end of file
@@ -1,33 +1,55 @@
 package microservices.book.multiplication.challenge;
 
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import microservices.book.multiplication.serviceclients.ChallengeEventPub;
 import microservices.book.multiplication.user.User;
-import microservices.book.multiplication.user.UserRepository;
+import microservices.book.multiplication.user.UserService;
 
 @Slf4j
 @RequiredArgsConstructor
 @Service
 public class ChallengeServiceImpl implements ChallengeService {
 
-    private final UserRepository userRepository;
+    private final UserService userService;
     private final ChallengeAttemptRepository attemptRepository;
     private final ChallengeEventPub challengeEventPub;
+    private final TransactionTemplate transactionTemplate;
+    private final RecentAttempts recentAttempts;
+    private final AttemptIdempotencyKeyRepository idempotencyKeyRepository;
 
+    /*
+     * The attempt and its event (in the outbox) are stored in the same
+     * transaction, so either both are stored or none of them.
+     * The user is resolved before that transaction starts: a new user is
+     * created in its own transaction, and doing it inside the one of the
+     * attempt would hold a connection while waiting for a second one, which
+     * exhausts the connection pool when many new users play at the same time.
+     * The idempotency key is stored in that transaction too. When the same
+     * key arrives twice at the same time (e.g. to two instances), both miss
+     * the lookup, but only one can insert the key: the other transaction
+     * is rolled back, with its attempt and event, and returns the first one.
+     */
     @Override
-    public ChallengeAttempt verifyAttempt(ChallengeAttemptDTO attemptDTO) {
+    public ChallengeAttempt verifyAttempt(ChallengeAttemptDTO attemptDTO, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            Optional<ChallengeAttempt> previous = findByIdempotencyKey(idempotencyKey, attemptDTO);
+            if (previous.isPresent()) {
+                log.info("Attempt with Idempotency-Key {} already stored", idempotencyKey);
+                return previous.get();
+            }
+        }
+
         // Check if the user already exists for that alias, otherwise create it
-        User user = userRepository
-                .findByAlias(attemptDTO.getUserAlias())
-                .orElseGet(() -> {
-                    log.info("Creating new user with alias {}", attemptDTO.getUserAlias());
-                    return userRepository.save(new User(attemptDTO.getUserAlias()));
-                });
+        User user = userService.findOrCreateByAlias(attemptDTO.getUserAlias());
 
         // Check if the attempt is correct
         boolean isCorrect = attemptDTO.getGuess() == attemptDTO.getFactorA() * attemptDTO.getFactorB();
@@ -40,9 +62,27 @@ public class ChallengeServiceImpl implements ChallengeService {
                 attemptDTO.getGuess(),
                 isCorrect);
 
-        // Stores the attempt
-        ChallengeAttempt storedAttempt = attemptRepository.save(checkedAttempt);
-        // Publishes an event to notify potentially interested subscribers
+        ChallengeAttempt storedAttempt;
+        try {
+            storedAttempt = transactionTemplate.execute(status -> {
+                // Stores the attempt
+                ChallengeAttempt attempt = attemptRepository.save(checkedAttempt);
+                if (idempotencyKey != null) {
+                    idempotencyKeyRepository.save(new AttemptIdempotencyKey(idempotencyKey,
+                            attempt.getId(), System.currentTimeMillis()));
+                }
+                // Publishes an event to notify potentially interested subscribers
+                challengeEventPub.challengeSolved(attempt);
+                return attempt;
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (idempotencyKey == null) {
+                throw e;
+            }
+            return findByIdempotencyKey(idempotencyKey, attemptDTO).orElseThrow(() -> e);
+        }
+        // Only once it's committed, so the recent attempts never show one that was rolled back
+        recentAttempts.add(storedAttempt);
         /*
          * if brocker is down you’ll get an HTTP error response from the
          * server since you didn’t catch any potential exception within the publisher,
@@ -110,11 +150,26 @@ public class ChallengeServiceImpl implements ChallengeService {
          * thrown exception, so it’s never performed.
          * 
          */
-        challengeEventPub.challengeSolved(storedAttempt);
-
         return storedAttempt;
     }
 
+    private Optional<ChallengeAttempt> findByIdempotencyKey(String idempotencyKey,
+                                                            ChallengeAttemptDTO attemptDTO) {
+        Optional<ChallengeAttempt> previous = idempotencyKeyRepository.findById(idempotencyKey)
+                .flatMap(key -> attemptRepository.findWithUserById(key.getAttemptId()));
+        previous.filter(attempt -> !isSameAttempt(attempt, attemptDTO)).ifPresent(attempt -> {
+            throw new IdempotencyKeyConflictException(idempotencyKey);
+        });
+        return previous;
+    }
+
+    private static boolean isSameAttempt(ChallengeAttempt attempt, ChallengeAttemptDTO attemptDTO) {
+        return attempt.getUser().getAlias().equals(attemptDTO.getUserAlias())
+                && attempt.getFactorA() == attemptDTO.getFactorA()
+                && attempt.getFactorB() == attemptDTO.getFactorB()
+                && attempt.getResultAttempt() == attemptDTO.getGuess();
+    }
+
     /**
      * Gets the statistics for a given user.
      * *
@@ -125,6 +180,23 @@ public class ChallengeServiceImpl implements ChallengeService {
      */
     @Override
     public List<ChallengeAttempt> getStatsForUser(final String userAlias) {
-        return attemptRepository.findTop10ByUserAliasOrderByIdDesc(userAlias);
+        return recentAttempts.get(userAlias, alias -> attemptRepository
+                .findByUserAliasOrderByIdDesc(alias, Limit.of(recentAttempts.getSize())));
+    }
+
+    /*
+     * The first pages that fit in the recent attempts are served from them,
+     * the deeper ones from the database.
+     */
+    @Override
+    public List<ChallengeAttempt> getAttemptsForUser(final String userAlias, final Long before, final int size) {
+        if (before == null) {
+            if (size <= recentAttempts.getSize()) {
+                List<ChallengeAttempt> recent = getStatsForUser(userAlias);
+                return recent.subList(0, Math.min(size, recent.size()));
+            }
+            return attemptRepository.findByUserAliasOrderByIdDesc(userAlias, Limit.of(size));
+        }
+        return attemptRepository.findByUserAliasAndIdLessThanOrderByIdDesc(userAlias, before, Limit.of(size));
     }
 }
\ No newline at end of file
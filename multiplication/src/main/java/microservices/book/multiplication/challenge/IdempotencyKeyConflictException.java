@@ -0,0 +1,13 @@
+package microservices.book.multiplication.challenge;
+
+/**
+ * Thrown when an Idempotency-Key that was already used for an attempt is sent
+ * again with a different attempt. The client has to use a new key for it.
+ */
+public class IdempotencyKeyConflictException extends RuntimeException {
+
+    public IdempotencyKeyConflictException(final String idempotencyKey) {
+        super("The Idempotency-Key " + idempotencyKey
+                + " was already used for a different attempt");
+    }
+}
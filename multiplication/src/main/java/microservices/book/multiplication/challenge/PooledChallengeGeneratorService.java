@@ -0,0 +1,147 @@
+package microservices.book.multiplication.challenge;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static microservices.book.multiplication.challenge.ChallengeGeneratorServiceImpl.MAXIMUM_FACTOR;
+import static microservices.book.multiplication.challenge.ChallengeGeneratorServiceImpl.MINIMUM_FACTOR;
+
+/**
+ * Serves the challenges from a pool with all the possible ones, created at
+ * startup. It's enabled with challenges.generator.mode=pool.
+ * The pool is sorted by the result of the multiplication and split in
+ * challenges.generator.difficulty-levels buckets, so a difficulty level can be
+ * requested (1 is the easiest).
+ * When the alias of the user is given, the user doesn't get the same challenge
+ * again until they have seen all the challenges of the level. The last
+ * challenges.generator.no-repeat.users users are remembered for
+ * challenges.generator.no-repeat.ttl, zero users disables it.
+ */
+/*
+ * Every user walks the challenges of a level in their own random order: the
+ * n-th challenge is (offset + n * stride) mod size, where the stride has no
+ * common factors with the size, so the first size steps visit every challenge
+ * once. The only state is the step of every level, an atomic counter, so there
+ * are no locks when serving a challenge.
+ */
+@Service
+@ConditionalOnProperty(name = "challenges.generator.mode", havingValue = "pool")
+public class PooledChallengeGeneratorService implements ChallengeGeneratorService {
+
+    private final Challenge[] all;
+    private final Challenge[][] levels;
+    private final int[] walkSizes;
+    private final Cache<String, UserWalk> walks;
+
+    PooledChallengeGeneratorService(@Value("${challenges.generator.difficulty-levels:3}") final int levels,
+                                    @Value("${challenges.generator.no-repeat.users:10000}") final long users,
+                                    @Value("${challenges.generator.no-repeat.ttl:1h}") final Duration ttl) {
+        List<Challenge> challenges = new ArrayList<>();
+        for (int a = MINIMUM_FACTOR; a < MAXIMUM_FACTOR; a++) {
+            for (int b = MINIMUM_FACTOR; b < MAXIMUM_FACTOR; b++) {
+                challenges.add(new Challenge(a, b));
+            }
+        }
+        challenges.sort(Comparator.comparingInt(c -> c.getFactorA() * c.getFactorB()));
+        if (levels < 1 || levels > challenges.size()) {
+            throw new IllegalArgumentException("challenges.generator.difficulty-levels must be " +
+                    "between 1 and " + challenges.size());
+        }
+        this.all = challenges.toArray(Challenge[]::new);
+        this.levels = new Challenge[levels][];
+        for (int i = 0; i < levels; i++) {
+            this.levels[i] = Arrays.copyOfRange(all,
+                    i * all.length / levels, (i + 1) * all.length / levels);
+        }
+        // One walk per level, plus one for the challenges of any level
+        this.walkSizes = new int[levels + 1];
+        for (int i = 0; i < levels; i++) {
+            walkSizes[i] = this.levels[i].length;
+        }
+        walkSizes[levels] = all.length;
+        this.walks = users > 0 ? Caffeine.newBuilder()
+                .maximumSize(users)
+                .expireAfterAccess(ttl)
+                .build() : null;
+    }
+
+    /**
+     * @return the number of difficulty levels
+     */
+    public int getDifficultyLevels() {
+        return levels.length;
+    }
+
+    @Override
+    public Challenge randomChallenge() {
+        return all[ThreadLocalRandom.current().nextInt(all.length)];
+    }
+
+    @Override
+    public Challenge randomChallenge(final Integer difficulty, final String userAlias) {
+        Challenge[] pool = poolOf(difficulty);
+        if (userAlias == null || walks == null) {
+            return pool[ThreadLocalRandom.current().nextInt(pool.length)];
+        }
+        int walk = difficulty == null ? levels.length : difficulty - 1;
+        return pool[walks.get(userAlias, alias -> new UserWalk(walkSizes)).next(walk)];
+    }
+
+    private Challenge[] poolOf(final Integer difficulty) {
+        if (difficulty == null) {
+            return all;
+        }
+        if (difficulty < 1 || difficulty > levels.length) {
+            throw new IllegalArgumentException("The difficulty must be between 1 and " + levels.length);
+        }
+        return levels[difficulty - 1];
+    }
+
+    private static class UserWalk {
+
+        private final int[] sizes;
+        private final int[] offsets;
+        private final int[] strides;
+        private final AtomicIntegerArray steps;
+
+        UserWalk(final int[] sizes) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            this.sizes = sizes;
+            this.offsets = new int[sizes.length];
+            this.strides = new int[sizes.length];
+            for (int i = 0; i < sizes.length; i++) {
+                offsets[i] = random.nextInt(sizes[i]);
+                strides[i] = coprimeStride(random, sizes[i]);
+            }
+            this.steps = new AtomicIntegerArray(sizes.length);
+        }
+
+        int next(final int walk) {
+            long step = steps.getAndIncrement(walk);
+            return (int) Math.floorMod(offsets[walk] + step * strides[walk], (long) sizes[walk]);
+        }
+
+        private static int coprimeStride(final ThreadLocalRandom random, final int size) {
+            if (size == 1) {
+                return 1;
+            }
+            int stride;
+            do {
+                stride = random.nextInt(1, size);
+            } while (BigInteger.valueOf(stride).gcd(BigInteger.valueOf(size)).intValue() != 1);
+            return stride;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package microservices.book.multiplication.challenge;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Keeps the last attempts.recent.size attempts of the users that checked
+ * their statistics recently, newest first, so GET /attempts doesn't query the
+ * database after every attempt.
+ * Up to attempts.recent.users users are kept, for attempts.recent.ttl since
+ * their attempts were loaded from the database. Neither reading them nor
+ * adding new attempts extends that time, so the ttl also bounds how long the
+ * list can be missing the attempts that were stored by other instances of
+ * the service.
+ */
+/*
+ * Every user has an immutable list, replaced on every new attempt, so reads
+ * don't need locks. Only the users already in the cache are updated: for the
+ * others, the next read loads the last attempts from the database, new one
+ * included.
+ * The cache is asynchronous so the query runs outside of it, instead of
+ * holding the lock of a part of its map (and pinning the carrier thread with
+ * virtual threads) while it waits for the database. The cache only stores a
+ * future, which concurrent reads of the same user wait for. An update that
+ * arrives while the load runs is chained to that future, and is skipped if
+ * the load already found the attempt.
+ */
+@Component
+public class RecentAttempts {
+
+    private final int size;
+    private final AsyncCache<String, List<ChallengeAttempt>> attemptsByAlias;
+
+    @Autowired
+    public RecentAttempts(@Value("${attempts.recent.size:10}") final int size,
+                          @Value("${attempts.recent.users:10000}") final long users,
+                          @Value("${attempts.recent.ttl:1m}") final Duration ttl) {
+        this(size, users, ttl, Ticker.systemTicker());
+    }
+
+    RecentAttempts(final int size, final long users, final Duration ttl, final Ticker ticker) {
+        this.size = size;
+        this.attemptsByAlias = Caffeine.newBuilder()
+                .maximumSize(users)
+                .expireAfter(new ExpireAfterLoad(ttl.toNanos()))
+                .ticker(ticker)
+                .buildAsync();
+    }
+
+    /**
+     * @return the number of attempts kept per user
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param userAlias the alias of the user
+     * @param loader    loads the last attempts of the user if they aren't kept
+     * @return the last attempts of the user, newest first
+     */
+    public List<ChallengeAttempt> get(final String userAlias,
+                                      final Function<String, List<ChallengeAttempt>> loader) {
+        CompletableFuture<List<ChallengeAttempt>> load = new CompletableFuture<>();
+        CompletableFuture<List<ChallengeAttempt>> cached = attemptsByAlias.asMap()
+                .putIfAbsent(userAlias, load);
+        if (cached != null) {
+            return join(cached);
+        }
+        try {
+            load.complete(List.copyOf(loader.apply(userAlias)));
+        } catch (final RuntimeException e) {
+            // The failed future is removed, the next read loads them again
+            load.completeExceptionally(e);
+            throw e;
+        }
+        // With the attempts added while it was loading, if any
+        CompletableFuture<List<ChallengeAttempt>> latest = attemptsByAlias.getIfPresent(userAlias);
+        return join(latest != null ? latest : load);
+    }
+
+    /**
+     * Adds a new attempt in front of the last attempts of its user, dropping
+     * the oldest one if there are already attempts.recent.size.
+     *
+     * @param attempt the attempt, already stored
+     */
+    public void add(final ChallengeAttempt attempt) {
+        attemptsByAlias.asMap().computeIfPresent(attempt.getUser().getAlias(),
+                (alias, attempts) -> attempts.thenApply(loaded -> prepend(loaded, attempt)));
+    }
+
+    private List<ChallengeAttempt> prepend(final List<ChallengeAttempt> attempts,
+                                           final ChallengeAttempt attempt) {
+        if (attempts.stream().anyMatch(a -> a.getId().equals(attempt.getId()))) {
+            return attempts;
+        }
+        List<ChallengeAttempt> updated = new ArrayList<>(Math.min(attempts.size() + 1, size));
+        updated.add(attempt);
+        updated.addAll(attempts.subList(0, Math.min(attempts.size(), size - 1)));
+        return List.copyOf(updated);
+    }
+
+    private static List<ChallengeAttempt> join(final CompletableFuture<List<ChallengeAttempt>> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Like expireAfterWrite, except that the updates made by #add keep the
+     * time of the load: an active user adds an attempt before every read, so
+     * their list would never be loaded again.
+     */
+    private record ExpireAfterLoad(long ttlNanos) implements Expiry<String, List<ChallengeAttempt>> {
+
+        @Override
+        public long expireAfterCreate(final String alias, final List<ChallengeAttempt> attempts,
+                                      final long currentTime) {
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(final String alias, final List<ChallengeAttempt> attempts,
+                                      final long currentTime, final long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(final String alias, final List<ChallengeAttempt> attempts,
+                                    final long currentTime, final long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package microservices.book.multiplication.challenge;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static microservices.book.multiplication.challenge.ChallengeGeneratorServiceImpl.MAXIMUM_FACTOR;
+import static microservices.book.multiplication.challenge.ChallengeGeneratorServiceImpl.MINIMUM_FACTOR;
+
+/**
+ * Generates the challenges with the random generator of the current thread,
+ * so the concurrent requests don't compete for the seed of a shared Random.
+ * It's enabled with challenges.generator.mode=thread-local.
+ */
+@Service
+@ConditionalOnProperty(name = "challenges.generator.mode", havingValue = "thread-local")
+public class ThreadLocalChallengeGeneratorService implements ChallengeGeneratorService {
+
+    @Override
+    public Challenge randomChallenge() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new Challenge(random.nextInt(MINIMUM_FACTOR, MAXIMUM_FACTOR),
+                random.nextInt(MINIMUM_FACTOR, MAXIMUM_FACTOR));
+    }
+}
@@ -3,10 +3,13 @@ package microservices.book.multiplication.configuration;
 import org.springframework.amqp.core.ExchangeBuilder;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import microservices.book.multiplication.serviceclients.ChallengeSolvedEventBinaryConverter;
+
 /**
  * Configures RabbitMQ via AMQP abstraction to use events in our
  * application.
@@ -72,8 +75,14 @@ public class AMQPConfiguration {
      * fields in the
      * payload, the subscribers don’t need to change anything.
      */
+    /*
+     * With amqp.event.format=binary, the ChallengeSolvedEvents are converted
+     * to a compact binary format instead, see ChallengeSolvedEventBinaryConverter.
+     * The consumers tell them apart by the content type of the message.
+     */
     @Bean
-    public Jackson2JsonMessageConverter producerJackson2MessageConverter() {
+    public MessageConverter producerMessageConverter(
+            @Value("${amqp.event.format:json}") final String eventFormat) {
         /*
          * The Jackson2JsonMessageConverter uses a Jackson’s ObjectMapper preconfigured
          * in Spring AMQP. This bean will be used then by the RabbitTemplate
@@ -90,6 +99,12 @@ public class AMQPConfiguration {
          * fields in the
          * payload, the subscribers don’t need to change anything
          */
-        return new Jackson2JsonMessageConverter();
+        Jackson2JsonMessageConverter jsonConverter = new Jackson2JsonMessageConverter();
+        return switch (eventFormat) {
+            case "json" -> jsonConverter;
+            case "binary" -> new ChallengeSolvedEventBinaryConverter(jsonConverter);
+            default -> throw new IllegalArgumentException(
+                    "amqp.event.format must be json or binary: " + eventFormat);
+        };
     }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package microservices.book.multiplication.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Stops the application when spring.threads.virtual.enabled is true but the
+ * JVM doesn't have virtual threads (they need Java 21). Spring Boot would
+ * silently keep the platform threads instead, so a run that is supposed to
+ * use virtual threads would measure the platform ones.
+ * The jar is built for Java 17, but it runs on a Java 21 JVM.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+
+    static final int MINIMUM_JAVA_VERSION = 21;
+
+    public VirtualThreadsConfiguration() {
+        int javaVersion = Runtime.version().feature();
+        if (javaVersion < MINIMUM_JAVA_VERSION) {
+            throw new IllegalStateException("spring.threads.virtual.enabled needs Java " +
+                    MINIMUM_JAVA_VERSION + " or newer, this JVM is Java " + javaVersion);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package microservices.book.multiplication.serviceclients;
 
-import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -11,6 +12,16 @@ import microservices.book.multiplication.challenge.ChallengeSolvedEvent;
  * Next, you create a new component to publish the event. This is the equivalent to
 the REST client you already removed, but this time you communicate with the message broker
  */
+/*
+ * The events are not sent to the broker here anymore. They're converted to
+ * messages and stored in the outbox, in the same transaction as the attempt,
+ * and the OutboxRelay publishes them in the background. This way the request
+ * doesn't wait for the broker, and an attempt is never stored without its event.
+ * The routing key ends with the partition of the user (attempt.correct.<n> or
+ * attempt.wrong.<n>), out of amqp.attempts.partitions, so the consumers can
+ * split the events in several queues while the events of a user always go to
+ * the same one.
+ */
 @Service
 public class ChallengeEventPub {
 
@@ -21,13 +32,19 @@ public class ChallengeEventPub {
      * configured
      * earlier
      */
-    private final AmqpTemplate amqpTemplate;
+    private final OutboxEventRepository outboxEventRepository;
+    private final MessageConverter messageConverter;
     private final String challengesTopicExchange;
+    private final int partitions;
 
-    public ChallengeEventPub(final AmqpTemplate amqpTemplate,
-            @Value("${amqp.exchange.attempts}") final String challengesTopicExchange) {
-        this.amqpTemplate = amqpTemplate;
+    public ChallengeEventPub(final OutboxEventRepository outboxEventRepository,
+            final MessageConverter messageConverter,
+            @Value("${amqp.exchange.attempts}") final String challengesTopicExchange,
+            @Value("${amqp.attempts.partitions:1}") final int partitions) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.messageConverter = messageConverter;
         this.challengesTopicExchange = challengesTopicExchange;
+        this.partitions = partitions;
     }
 
     public void challengeSolved(final ChallengeAttempt challengeAttempt) {
@@ -42,8 +59,9 @@ public class ChallengeEventPub {
          */
 
         ChallengeSolvedEvent event = buildEvent(challengeAttempt);
-        // Routing Key is 'attempt.correct' or 'attempt.wrong'
-        String routingKey = "attempt." + (event.isCorrect() ? "correct" : "wrong");
+        // Routing Key is 'attempt.correct.<n>' or 'attempt.wrong.<n>'
+        String routingKey = "attempt." + (event.isCorrect() ? "correct" : "wrong")
+                + "." + partitionOf(event.getUserId(), partitions);
         // Convert a Java object to an Amqp Message and send it to a default exchange
         // with a default routing key.
         /*
@@ -76,9 +94,18 @@ public class ChallengeEventPub {
          * system is
          * not operational when you lose connection with the broker.
          */
-        amqpTemplate.convertAndSend(challengesTopicExchange,
+        outboxEventRepository.save(new OutboxEvent(challengesTopicExchange,
                 routingKey,
-                event);
+                messageConverter.toMessage(event, new MessageProperties())));
+    }
+
+    /**
+     * @param userId     the id of the user
+     * @param partitions the number of partitions
+     * @return the partition of the events of the user, between 0 and partitions - 1
+     */
+    static int partitionOf(final long userId, final int partitions) {
+        return Math.floorMod(Long.hashCode(userId), partitions);
     }
 
     private ChallengeSolvedEvent buildEvent(final ChallengeAttempt attempt) {
@@ -0,0 +1,104 @@
+package microservices.book.multiplication.serviceclients;
+
+import microservices.book.multiplication.challenge.ChallengeSolvedEvent;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts the {@link ChallengeSolvedEvent}s to a compact binary format,
+ * identified by the {@link #CONTENT_TYPE} of the message. Any other object,
+ * or any message with another content type, is handled by the delegate
+ * converter (JSON).
+ * It's enabled with amqp.event.format=binary.
+ */
+/*
+ * The layout is fixed, so there are no field names in the payload, and it
+ * starts with a version byte so it can evolve:
+ * version (1 byte), attemptId (8), correct (1), factorA (4), factorB (4),
+ * userId (8), length of the userAlias in UTF-8 (2, -1 if null) and the
+ * userAlias. All the numbers are big-endian.
+ * Gamification has its own copy of the layout, like it has its own copy of
+ * the event.
+ */
+public class ChallengeSolvedEventBinaryConverter implements MessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-challenge-solved-event";
+    static final byte VERSION = 1;
+    private static final int FIXED_LENGTH = 1 + 8 + 1 + 4 + 4 + 8 + 2;
+
+    private final MessageConverter delegate;
+
+    public ChallengeSolvedEventBinaryConverter(final MessageConverter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Message toMessage(final Object object, final MessageProperties messageProperties) {
+        if (!(object instanceof ChallengeSolvedEvent event)) {
+            return delegate.toMessage(object, messageProperties);
+        }
+        byte[] body = encode(event);
+        messageProperties.setContentType(CONTENT_TYPE);
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(final Message message) {
+        if (!CONTENT_TYPE.equals(message.getMessageProperties().getContentType())) {
+            return delegate.fromMessage(message);
+        }
+        try {
+            return decode(message.getBody());
+        } catch (final BufferUnderflowException | IllegalArgumentException e) {
+            throw new MessageConversionException("Malformed ChallengeSolvedEvent", e);
+        }
+    }
+
+    static byte[] encode(final ChallengeSolvedEvent event) {
+        byte[] alias = event.getUserAlias() != null ?
+                event.getUserAlias().getBytes(StandardCharsets.UTF_8) : null;
+        if (alias != null && alias.length > Short.MAX_VALUE) {
+            throw new MessageConversionException("User alias too long: " + alias.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_LENGTH + (alias != null ? alias.length : 0))
+                .put(VERSION)
+                .putLong(event.getAttemptId())
+                .put((byte) (event.isCorrect() ? 1 : 0))
+                .putInt(event.getFactorA())
+                .putInt(event.getFactorB())
+                .putLong(event.getUserId())
+                .putShort((short) (alias != null ? alias.length : -1));
+        if (alias != null) {
+            buffer.put(alias);
+        }
+        return buffer.array();
+    }
+
+    static ChallengeSolvedEvent decode(final byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown version " + version);
+        }
+        long attemptId = buffer.getLong();
+        boolean correct = buffer.get() != 0;
+        int factorA = buffer.getInt();
+        int factorB = buffer.getInt();
+        long userId = buffer.getLong();
+        short aliasLength = buffer.getShort();
+        String alias = null;
+        if (aliasLength >= 0) {
+            byte[] aliasBytes = new byte[aliasLength];
+            buffer.get(aliasBytes);
+            alias = new String(aliasBytes, StandardCharsets.UTF_8);
+        }
+        return new ChallengeSolvedEvent(attemptId, correct, factorA, factorB, userId, alias);
+    }
+}
@@ -0,0 +1,47 @@
+package microservices.book.multiplication.serviceclients;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.Date;
+
+/**
+ * A message that is waiting to be published to the broker. It's stored in the
+ * same transaction as the data that caused it, so no event gets lost if the
+ * broker is not available at that moment.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxEvent {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String exchange;
+    private String routingKey;
+    private String contentType;
+    @Lob
+    private byte[] payload;
+    private long createdTimestamp;
+
+    public OutboxEvent(final String exchange, final String routingKey,
+                       final Message message) {
+        this(null, exchange, routingKey,
+                message.getMessageProperties().getContentType(),
+                message.getBody(), System.currentTimeMillis());
+    }
+
+    /**
+     * @return the AMQP message to publish, identified by the id of the event
+     */
+    public Message toMessage() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(contentType);
+        properties.setMessageId(String.valueOf(id));
+        properties.setTimestamp(new Date(createdTimestamp));
+        return new Message(payload, properties);
+    }
+}
@@ -0,0 +1,34 @@
+package microservices.book.multiplication.serviceclients;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface OutboxEventRepository extends CrudRepository<OutboxEvent, Long> {
+
+    /**
+     * Retrieves the oldest events waiting to be published, locking them until
+     * the end of the transaction so they're not published twice by two
+     * instances at the same time.
+     *
+     * @param limit the maximum number of events to retrieve
+     * @return the events, in the order they were stored
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<OutboxEvent> findAllByOrderByIdAsc(final Limit limit);
+
+    /**
+     * Deletes the given events with a single statement.
+     *
+     * @param ids the ids of the events already published
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.id IN :ids")
+    void deleteAllByIdIn(@Param("ids") final List<Long> ids);
+}
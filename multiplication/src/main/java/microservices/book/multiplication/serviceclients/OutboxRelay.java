@@ -0,0 +1,85 @@
+package microservices.book.multiplication.serviceclients;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes the events stored in the outbox to the broker, in batches.
+ * It runs every amqp.outbox.flush-interval-ms milliseconds and keeps going
+ * while it finds full batches of amqp.outbox.batch-size events.
+ */
+/*
+ * Every batch is sent on the same channel and then we wait for the broker to
+ * confirm all of them (publisher confirms) before deleting the events, all in
+ * one transaction. If anything fails, the transaction is rolled back and the
+ * events are published again on the next run. That means an event can reach the
+ * broker more than once (at-least-once delivery), so consumers must tolerate
+ * duplicates: the message id is the id of the outbox event.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long confirmTimeoutMs;
+
+    public OutboxRelay(final OutboxEventRepository outboxEventRepository,
+                       final RabbitTemplate rabbitTemplate,
+                       final TransactionTemplate transactionTemplate,
+                       @Value("${amqp.outbox.batch-size:100}") final int batchSize,
+                       @Value("${amqp.outbox.confirm-timeout-ms:5000}") final long confirmTimeoutMs) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+    }
+
+    @Scheduled(fixedDelayString = "${amqp.outbox.flush-interval-ms:100}")
+    public void flush() {
+        try {
+            Integer published;
+            do {
+                published = transactionTemplate.execute(status -> publishBatch());
+            } while (published != null && published == batchSize);
+        } catch (final Exception e) {
+            log.error("Error when publishing the outbox events, they'll be retried", e);
+        }
+    }
+
+    /**
+     * Publishes the oldest events in the outbox and deletes them once the
+     * broker confirms them.
+     *
+     * @return the number of events published
+     */
+    int publishBatch() {
+        List<OutboxEvent> events = outboxEventRepository
+                .findAllByOrderByIdAsc(Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+        rabbitTemplate.invoke(operations -> {
+            events.forEach(event -> operations.send(event.getExchange(),
+                    event.getRoutingKey(), event.toMessage()));
+            operations.waitForConfirmsOrDie(confirmTimeoutMs);
+            return null;
+        });
+        outboxEventRepository.deleteAllByIdIn(events.stream()
+                .map(OutboxEvent::getId)
+                .collect(Collectors.toList()));
+        log.debug("Published {} outbox events", events.size());
+        return events.size();
+    }
+}
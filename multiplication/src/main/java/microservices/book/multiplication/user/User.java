@@ -5,8 +5,12 @@ import jakarta.persistence.*;
 
 /**
  * Stores information to identify the user.
+ * The alias is unique, so there can't be two users with the same alias even
+ * if they're created at the same time.
  */
 @Entity(name = "users")
+@Table(name = "users", uniqueConstraints =
+        @UniqueConstraint(name = "uk_users_alias", columnNames = "alias"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
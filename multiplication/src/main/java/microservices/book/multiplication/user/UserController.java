@@ -1,7 +1,14 @@
 package microservices.book.multiplication.user;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -19,9 +26,28 @@ manner
 @RequestMapping("/users")
 public class UserController {
     private final UserRepository userRepository;
+    private final UserService userService;
+
+    @Value("${users.batch.max-size:1000}")
+    private int maxBatchSize;
 
     @GetMapping("/{idList}")
     public List<User> getUsersByIdList(@PathVariable(name = "idList", required = true) final List<Long> idList) {
         return userRepository.findAllByIdIn(idList);
     }
+
+    /*
+     * The ids go in the body as a JSON array, so there is no limit on the URL
+     * length, and the response is just the alias of every id. Repeated ids are
+     * merged and the aliases come from a cache, see UserServiceImpl.
+     */
+    @PostMapping("/batch")
+    public Map<Long, String> getAliasesByIds(@RequestBody final Set<Long> ids) {
+        if (ids.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + maxBatchSize + " users can be requested at once");
+        }
+        ids.removeIf(Objects::isNull);
+        return userService.findAliasesByIds(ids);
+    }
 }
\ No newline at end of file
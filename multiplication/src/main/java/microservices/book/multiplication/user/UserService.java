@@ -0,0 +1,24 @@
+package microservices.book.multiplication.user;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface UserService {
+
+    /**
+     * Gets the user with the given alias, creating it if it doesn't exist yet.
+     *
+     * @param alias the alias of the user
+     * @return the user, always stored in the database
+     */
+    User findOrCreateByAlias(String alias);
+
+    /**
+     * Gets the aliases of the given users. The ids of users that don't exist
+     * are left out.
+     *
+     * @param ids the ids of the users
+     * @return the alias of every user, by id
+     */
+    Map<Long, String> findAliasesByIds(Collection<Long> ids);
+}
@@ -0,0 +1,124 @@
+package microservices.book.multiplication.user;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/*
+ * Users never change their alias, so once we know the user for an alias we can
+ * keep it in memory and skip the query on the next attempts. The cache is
+ * bounded by users.cache.size and the entries expire after users.cache.ttl, so
+ * inactive users don't stay in memory forever.
+ * Two attempts of a new user can arrive at the same time (in this instance or in
+ * another one). The unique constraint on the alias makes sure only one of them
+ * creates the user: the other one gets a constraint violation and reads the user
+ * created by the first one. The user is created in its own transaction, so the
+ * new user is visible to other instances straight away. That's also why this
+ * service shouldn't be called within another transaction: it would hold one
+ * connection while waiting for a second one.
+ * Both caches are asynchronous, so the queries never run inside the cache: a
+ * synchronous cache loads the entries while it holds the lock of a part of its
+ * map, so the lookups of other aliases in that part would wait for the
+ * database, and with virtual threads enabled the carrier thread would be
+ * pinned. Only a future is stored atomically, and concurrent lookups of the
+ * same user wait for it instead of running their own query.
+ * The aliases are also cached by user id, for the leader board. Only the
+ * missing ids are queried, all of them at once.
+ */
+@Slf4j
+@Service
+public class UserServiceImpl implements UserService {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate newTransaction;
+    private final AsyncCache<String, User> usersByAlias;
+    private final AsyncCache<Long, String> aliasesById;
+
+    public UserServiceImpl(final UserRepository userRepository,
+                           final PlatformTransactionManager transactionManager,
+                           @Value("${users.cache.size:10000}") final long cacheSize,
+                           @Value("${users.cache.ttl:10m}") final Duration cacheTtl) {
+        this.userRepository = userRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.usersByAlias = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .buildAsync();
+        // Aliases never change, so they don't expire. The queries run in the
+        // thread that needs them, not in the common pool
+        this.aliasesById = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .executor(Runnable::run)
+                .buildAsync();
+    }
+
+    @Override
+    public User findOrCreateByAlias(final String alias) {
+        CompletableFuture<User> load = new CompletableFuture<>();
+        CompletableFuture<User> cached = usersByAlias.asMap().putIfAbsent(alias, load);
+        if (cached != null) {
+            return join(cached);
+        }
+        try {
+            load.complete(loadOrCreate(alias));
+        } catch (final RuntimeException e) {
+            // The failed future is removed, the next call loads the user again
+            load.completeExceptionally(e);
+            throw e;
+        }
+        return load.join();
+    }
+
+    @Override
+    public Map<Long, String> findAliasesByIds(final Collection<Long> ids) {
+        return aliasesById.getAll(ids, this::loadAliases).join();
+    }
+
+    private Map<Long, String> loadAliases(final Set<? extends Long> ids) {
+        log.debug("Loading the aliases of {} users", ids.size());
+        return userRepository.findAllByIdIn(List.copyOf(ids)).stream()
+                .collect(Collectors.toMap(User::getId, User::getAlias));
+    }
+
+    private User loadOrCreate(final String alias) {
+        return userRepository.findByAlias(alias)
+                .orElseGet(() -> create(alias));
+    }
+
+    private static User join(final CompletableFuture<User> future) {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private User create(final String alias) {
+        try {
+            log.info("Creating new user with alias {}", alias);
+            return newTransaction.execute(status -> userRepository.save(new User(alias)));
+        } catch (final DataIntegrityViolationException e) {
+            log.info("User with alias {} was created concurrently", alias);
+            return userRepository.findByAlias(alias).orElseThrow(() -> e);
+        }
+    }
+}
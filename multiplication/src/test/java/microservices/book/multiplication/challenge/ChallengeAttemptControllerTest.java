@@ -16,6 +16,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import static org.assertj.core.api.BDDAssertions.then;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 
@@ -42,7 +43,7 @@ class ChallengeAttemptControllerTest {
         ChallengeAttempt expectedResponse = new ChallengeAttempt(attemptId,
                 user ,50, 70, 3500, true);
         given(challengeService
-                .verifyAttempt(eq(attemptDTO)))
+                .verifyAttempt(eq(attemptDTO), isNull()))
                 .willReturn(expectedResponse);
         // when
         MockHttpServletResponse response = mvc.perform(
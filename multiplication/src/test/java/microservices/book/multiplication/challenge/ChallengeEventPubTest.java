@@ -7,9 +7,12 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 
 import microservices.book.multiplication.serviceclients.ChallengeEventPub;
+import microservices.book.multiplication.serviceclients.OutboxEvent;
+import microservices.book.multiplication.serviceclients.OutboxEventRepository;
 import microservices.book.multiplication.user.User;
 
 import static org.assertj.core.api.BDDAssertions.*;
@@ -21,12 +24,15 @@ class ChallengeEventPubTest {
     private ChallengeEventPub challengeEventPub;
 
     @Mock
-    private AmqpTemplate amqpTemplate;
+    private OutboxEventRepository outboxEventRepository;
+
+    private final Jackson2JsonMessageConverter messageConverter =
+            new Jackson2JsonMessageConverter();
 
     @BeforeEach
     public void setUp() {
-        challengeEventPub = new ChallengeEventPub(amqpTemplate,
-                "test.topic");
+        challengeEventPub = new ChallengeEventPub(outboxEventRepository,
+                messageConverter, "test.topic", 4);
     }
 
     /*
@@ -62,16 +68,18 @@ class ChallengeEventPubTest {
         challengeEventPub.challengeSolved(attempt);
 
         // then
-        var exchangeCaptor = ArgumentCaptor.forClass(String.class);
-        var routingKeyCaptor = ArgumentCaptor.forClass(String.class);
-        var eventCaptor = ArgumentCaptor.forClass(ChallengeSolvedEvent.class);
+        // the event is stored in the outbox, not sent to the broker
+        var outboxCaptor = ArgumentCaptor.forClass(OutboxEvent.class);
 
-        verify(amqpTemplate).convertAndSend(exchangeCaptor.capture(),
-                routingKeyCaptor.capture(), eventCaptor.capture());
-        then(exchangeCaptor.getValue()).isEqualTo("test.topic");
-        then(routingKeyCaptor.getValue()).isEqualTo("attempt." +
-                (correct ? "correct" : "wrong"));
-        then(eventCaptor.getValue()).isEqualTo(solvedEvent(correct));
+        verify(outboxEventRepository).save(outboxCaptor.capture());
+        OutboxEvent outboxEvent = outboxCaptor.getValue();
+        then(outboxEvent.getExchange()).isEqualTo("test.topic");
+        // user 10 goes to partition 2 out of 4
+        then(outboxEvent.getRoutingKey()).isEqualTo("attempt." +
+                (correct ? "correct" : "wrong") + ".2");
+        then(outboxEvent.getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+        then(outboxEvent.getPayload()).isEqualTo(messageConverter
+                .toMessage(solvedEvent(correct), new MessageProperties()).getBody());
     }
 
     private ChallengeAttempt createTestAttempt(boolean correct) {
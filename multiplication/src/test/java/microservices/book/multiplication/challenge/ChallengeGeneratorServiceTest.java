@@ -31,4 +31,14 @@ public class ChallengeGeneratorServiceTest {
 		// then the challenge contains factors as expected
 		then(challenge).isEqualTo(new Challenge(31, 41));
 	}
+
+	@Test
+	public void threadLocalFactorsAreBetweenExpectedLimits() {
+		ChallengeGeneratorService threadLocal = new ThreadLocalChallengeGeneratorService();
+		for (int i = 0; i < 1000; i++) {
+			Challenge challenge = threadLocal.randomChallenge();
+			then(challenge.getFactorA()).isBetween(11, 99);
+			then(challenge.getFactorB()).isBetween(11, 99);
+		}
+	}
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package microservices.book.multiplication.challenge;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
@@ -8,11 +9,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import microservices.book.multiplication.serviceclients.ChallengeEventPub;
 import microservices.book.multiplication.user.User;
-import microservices.book.multiplication.user.UserRepository;
+import microservices.book.multiplication.user.UserService;
 
+import static org.assertj.core.api.BDDAssertions.catchThrowable;
 import static org.assertj.core.api.BDDAssertions.then;
 import static org.mockito.AdditionalAnswers.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -24,18 +30,28 @@ public class ChallengeServiceTest {
     private ChallengeService challengeService;
 
     @Mock
-    private UserRepository userRepository;
+    private UserService userService;
     @Mock
     private ChallengeAttemptRepository attemptRepository;
     @Mock
     private ChallengeEventPub eventPub;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private AttemptIdempotencyKeyRepository idempotencyKeyRepository;
+
+    private RecentAttempts recentAttempts;
 
     @BeforeEach
     public void setUp() {
+        recentAttempts = new RecentAttempts(3, 100, Duration.ofMinutes(1));
         challengeService = new ChallengeServiceImpl(
-                userRepository,
+                userService,
                 attemptRepository,
-                eventPub
+                eventPub,
+                new TransactionTemplate(transactionManager),
+                recentAttempts,
+                idempotencyKeyRepository
         );
     }
 
@@ -44,6 +60,8 @@ public class ChallengeServiceTest {
         // given
         given(attemptRepository.save(any()))
                 .will(returnsFirstArg());
+        given(userService.findOrCreateByAlias("john_doe"))
+                .willReturn(new User("john_doe"));
         ChallengeAttemptDTO attemptDTO =
                 new ChallengeAttemptDTO(50, 60, "john_doe", 3000);
 
@@ -53,7 +71,7 @@ public class ChallengeServiceTest {
 
         // then
         then(resultAttempt.isCorrect()).isTrue();
-        verify(userRepository).save(new User("john_doe"));
+        then(resultAttempt.getUser()).isEqualTo(new User("john_doe"));
         verify(attemptRepository).save(resultAttempt);
         verify(eventPub).challengeSolved(resultAttempt);
     }
@@ -63,6 +81,8 @@ public class ChallengeServiceTest {
         // given
         given(attemptRepository.save(any()))
                 .will(returnsFirstArg());
+        given(userService.findOrCreateByAlias("john_doe"))
+                .willReturn(new User("john_doe"));
         ChallengeAttemptDTO attemptDTO =
                 new ChallengeAttemptDTO(50, 60, "john_doe", 5000);
 
@@ -72,7 +92,7 @@ public class ChallengeServiceTest {
 
         // then
         then(resultAttempt.isCorrect()).isFalse();
-        verify(userRepository).save(new User("john_doe"));
+        then(resultAttempt.getUser()).isEqualTo(new User("john_doe"));
         verify(attemptRepository).save(resultAttempt);
         verify(eventPub).challengeSolved(resultAttempt);
     }
@@ -83,8 +103,8 @@ public class ChallengeServiceTest {
         given(attemptRepository.save(any()))
                 .will(returnsFirstArg());
         User existingUser = new User(1L, "john_doe");
-        given(userRepository.findByAlias("john_doe"))
-                .willReturn(Optional.of(existingUser));
+        given(userService.findOrCreateByAlias("john_doe"))
+                .willReturn(existingUser);
         ChallengeAttemptDTO attemptDTO =
                 new ChallengeAttemptDTO(50, 60, "john_doe", 5000);
 
@@ -95,7 +115,6 @@ public class ChallengeServiceTest {
         // then
         then(resultAttempt.isCorrect()).isFalse();
         then(resultAttempt.getUser()).isEqualTo(existingUser);
-        verify(userRepository, never()).save(any());
         verify(attemptRepository).save(resultAttempt);
         verify(eventPub).challengeSolved(resultAttempt);
     }
@@ -107,7 +126,7 @@ public class ChallengeServiceTest {
         ChallengeAttempt attempt1 = new ChallengeAttempt(1L, user, 50, 60, 3010, false);
         ChallengeAttempt attempt2 = new ChallengeAttempt(2L, user, 50, 60, 3051, false);
         List<ChallengeAttempt> lastAttempts = List.of(attempt1, attempt2);
-        given(attemptRepository.findTop10ByUserAliasOrderByIdDesc("john_doe"))
+        given(attemptRepository.findByUserAliasOrderByIdDesc("john_doe", Limit.of(3)))
                 .willReturn(lastAttempts);
 
         // when
@@ -117,4 +136,127 @@ public class ChallengeServiceTest {
         // then
         then(latestAttemptsResult).isEqualTo(lastAttempts);
     }
+
+    @Test
+    public void statsAreLoadedOnceAndUpdatedWithNewAttemptsTest() {
+        // given
+        User user = new User(1L, "john_doe");
+        ChallengeAttempt attempt1 = new ChallengeAttempt(1L, user, 50, 60, 3010, false);
+        ChallengeAttempt attempt2 = new ChallengeAttempt(2L, user, 50, 60, 3051, false);
+        ChallengeAttempt attempt3 = new ChallengeAttempt(3L, user, 50, 60, 3000, true);
+        given(attemptRepository.findByUserAliasOrderByIdDesc("john_doe", Limit.of(3)))
+                .willReturn(List.of(attempt3, attempt2, attempt1));
+        given(userService.findOrCreateByAlias("john_doe")).willReturn(user);
+        given(attemptRepository.save(any())).will(invocation -> {
+            ChallengeAttempt attempt = invocation.getArgument(0);
+            attempt.setId(4L);
+            return attempt;
+        });
+        challengeService.getStatsForUser("john_doe");
+
+        // when
+        ChallengeAttempt attempt4 = challengeService.verifyAttempt(
+                new ChallengeAttemptDTO(50, 60, "john_doe", 3000));
+        List<ChallengeAttempt> latestAttemptsResult =
+                challengeService.getStatsForUser("john_doe");
+
+        // then the oldest one is dropped, without querying the database again
+        then(latestAttemptsResult).containsExactly(attempt4, attempt3, attempt2);
+        verify(attemptRepository).findByUserAliasOrderByIdDesc("john_doe", Limit.of(3));
+    }
+
+    @Test
+    public void olderAttemptsAreReadFromTheDatabaseTest() {
+        // given
+        User user = new User(1L, "john_doe");
+        ChallengeAttempt attempt1 = new ChallengeAttempt(1L, user, 50, 60, 3010, false);
+        given(attemptRepository.findByUserAliasAndIdLessThanOrderByIdDesc("john_doe", 2L, Limit.of(5)))
+                .willReturn(List.of(attempt1));
+
+        // when
+        List<ChallengeAttempt> page = challengeService.getAttemptsForUser("john_doe", 2L, 5);
+
+        // then
+        then(page).containsExactly(attempt1);
+    }
+
+    @Test
+    public void attemptWithNewIdempotencyKeyIsStoredTest() {
+        // given
+        given(userService.findOrCreateByAlias("john_doe")).willReturn(new User(1L, "john_doe"));
+        given(attemptRepository.save(any())).will(invocation -> {
+            ChallengeAttempt attempt = invocation.getArgument(0);
+            attempt.setId(7L);
+            return attempt;
+        });
+
+        // when
+        ChallengeAttempt resultAttempt = challengeService.verifyAttempt(
+                new ChallengeAttemptDTO(50, 60, "john_doe", 3000), "key-1");
+
+        // then
+        then(resultAttempt.getId()).isEqualTo(7L);
+        verify(idempotencyKeyRepository).save(argThat(key ->
+                key.getIdempotencyKey().equals("key-1") && key.getAttemptId() == 7L));
+        verify(eventPub).challengeSolved(resultAttempt);
+    }
+
+    @Test
+    public void repeatedIdempotencyKeyReturnsTheStoredAttemptTest() {
+        // given
+        ChallengeAttempt stored = new ChallengeAttempt(7L, new User(1L, "john_doe"), 50, 60, 3000, true);
+        given(idempotencyKeyRepository.findById("key-1"))
+                .willReturn(Optional.of(new AttemptIdempotencyKey("key-1", 7L, 0)));
+        given(attemptRepository.findWithUserById(7L)).willReturn(Optional.of(stored));
+
+        // when
+        ChallengeAttempt resultAttempt = challengeService.verifyAttempt(
+                new ChallengeAttemptDTO(50, 60, "john_doe", 3000), "key-1");
+
+        // then nothing new is stored or published
+        then(resultAttempt).isSameAs(stored);
+        verify(attemptRepository, never()).save(any());
+        verifyNoInteractions(eventPub);
+    }
+
+    @Test
+    public void concurrentIdempotencyKeyReturnsTheWinnerTest() {
+        // given another request stored the same key while this one was in flight
+        User user = new User(1L, "john_doe");
+        ChallengeAttempt winner = new ChallengeAttempt(7L, user, 50, 60, 3000, true);
+        given(userService.findOrCreateByAlias("john_doe")).willReturn(user);
+        given(attemptRepository.save(any())).will(returnsFirstArg());
+        given(idempotencyKeyRepository.findById("key-1"))
+                .willReturn(Optional.empty())
+                .willReturn(Optional.of(new AttemptIdempotencyKey("key-1", 7L, 0)));
+        given(idempotencyKeyRepository.save(any()))
+                .willThrow(new DataIntegrityViolationException("duplicate key"));
+        given(attemptRepository.findWithUserById(7L)).willReturn(Optional.of(winner));
+
+        // when
+        ChallengeAttempt resultAttempt = challengeService.verifyAttempt(
+                new ChallengeAttemptDTO(50, 60, "john_doe", 3000), "key-1");
+
+        // then
+        then(resultAttempt).isSameAs(winner);
+        verifyNoInteractions(eventPub);
+    }
+
+    @Test
+    public void idempotencyKeyOfAnotherAttemptIsRejectedTest() {
+        // given
+        ChallengeAttempt stored = new ChallengeAttempt(7L, new User(1L, "john_doe"), 50, 60, 3000, true);
+        given(idempotencyKeyRepository.findById("key-1"))
+                .willReturn(Optional.of(new AttemptIdempotencyKey("key-1", 7L, 0)));
+        given(attemptRepository.findWithUserById(7L)).willReturn(Optional.of(stored));
+
+        // when
+        Throwable thrown = catchThrowable(() -> challengeService.verifyAttempt(
+                new ChallengeAttemptDTO(20, 30, "john_doe", 600), "key-1"));
+
+        // then
+        then(thrown).isInstanceOf(IdempotencyKeyConflictException.class);
+        verify(attemptRepository, never()).save(any());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package microservices.book.multiplication.challenge;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class PooledChallengeGeneratorServiceTest {
+
+    private PooledChallengeGeneratorService generator;
+
+    @BeforeEach
+    public void setUp() {
+        generator = new PooledChallengeGeneratorService(3, 100, Duration.ofHours(1));
+    }
+
+    @Test
+    public void factorsAreBetweenExpectedLimitsTest() {
+        for (int i = 0; i < 1000; i++) {
+            Challenge challenge = generator.randomChallenge();
+            then(challenge.getFactorA()).isBetween(11, 99);
+            then(challenge.getFactorB()).isBetween(11, 99);
+        }
+    }
+
+    @Test
+    public void harderLevelsHaveBiggerResultsTest() {
+        int maxEasy = 0;
+        int minHard = Integer.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            Challenge easy = generator.randomChallenge(1, null);
+            Challenge hard = generator.randomChallenge(3, null);
+            maxEasy = Math.max(maxEasy, easy.getFactorA() * easy.getFactorB());
+            minHard = Math.min(minHard, hard.getFactorA() * hard.getFactorB());
+        }
+        then(maxEasy).isLessThanOrEqualTo(minHard);
+    }
+
+    @Test
+    public void userDoesNotGetTheSameChallengeUntilAllWereServedTest() {
+        // 89 * 89 challenges in 3 levels
+        int levelSize = 89 * 89 / 3;
+        Set<Challenge> served = new HashSet<>();
+        for (int i = 0; i < levelSize; i++) {
+            served.add(generator.randomChallenge(2, "john_doe"));
+        }
+        then(served).hasSize(levelSize);
+        // the next round starts again with the same order
+        then(served).contains(generator.randomChallenge(2, "john_doe"));
+    }
+
+    @Test
+    public void usersHaveIndependentWindowsTest() {
+        Set<Challenge> john = new HashSet<>();
+        Set<Challenge> jane = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            john.add(generator.randomChallenge(null, "john_doe"));
+            jane.add(generator.randomChallenge(null, "jane_doe"));
+        }
+        then(john).hasSize(100);
+        then(jane).hasSize(100);
+    }
+
+    @Test
+    public void unknownDifficultyIsRejectedTest() {
+        assertThatThrownBy(() -> generator.randomChallenge(4, "john_doe"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> generator.randomChallenge(0, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,138 @@
+package microservices.book.multiplication.challenge;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import microservices.book.multiplication.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.BDDAssertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+public class RecentAttemptsTest {
+
+    private final User user = new User(1L, "john_doe");
+    private RecentAttempts recentAttempts;
+
+    @BeforeEach
+    public void setUp() {
+        recentAttempts = new RecentAttempts(2, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void attemptsOfUsersNotKeptAreNotAddedTest() {
+        // when
+        recentAttempts.add(attempt(1L));
+
+        // then the next read loads them
+        then(recentAttempts.get("john_doe", alias -> List.of())).isEmpty();
+    }
+
+    @Test
+    public void newAttemptsGoFirstAndTheOldestIsDroppedTest() {
+        // given
+        recentAttempts.get("john_doe", alias -> List.of(attempt(1L)));
+
+        // when
+        recentAttempts.add(attempt(2L));
+        recentAttempts.add(attempt(3L));
+
+        // then
+        then(recentAttempts.get("john_doe", alias -> List.of()))
+                .extracting(ChallengeAttempt::getId)
+                .containsExactly(3L, 2L);
+    }
+
+    @Test
+    public void attemptsAlreadyLoadedAreNotAddedTwiceTest() {
+        // given
+        recentAttempts.get("john_doe", alias -> List.of(attempt(1L)));
+
+        // when
+        recentAttempts.add(attempt(1L));
+
+        // then
+        then(recentAttempts.get("john_doe", alias -> List.of()))
+                .extracting(ChallengeAttempt::getId)
+                .containsExactly(1L);
+    }
+
+    @Test
+    public void attemptsAreLoadedAgainAfterTtlEvenIfUsedTest() {
+        // given
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = nanos::get;
+        recentAttempts = new RecentAttempts(2, 100, Duration.ofMinutes(1), ticker);
+        recentAttempts.get("john_doe", alias -> List.of(attempt(1L)));
+
+        // when - the user keeps playing
+        nanos.addAndGet(Duration.ofSeconds(40).toNanos());
+        recentAttempts.add(attempt(2L));
+        recentAttempts.get("john_doe", alias -> List.of());
+        nanos.addAndGet(Duration.ofSeconds(40).toNanos());
+
+        // then - the attempt stored by another instance is loaded
+        then(recentAttempts.get("john_doe", alias -> List.of(attempt(5L), attempt(2L))))
+                .extracting(ChallengeAttempt::getId)
+                .containsExactly(5L, 2L);
+    }
+
+    @Test
+    public void attemptAddedWhileLoadingIsKeptTest() throws Exception {
+        // given a load that waits until the new attempt was added
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<ChallengeAttempt>> load = CompletableFuture.supplyAsync(
+                () -> recentAttempts.get("john_doe", alias -> {
+                    loadStarted.countDown();
+                    await(release);
+                    return List.of(attempt(1L));
+                }));
+        loadStarted.await(5, TimeUnit.SECONDS);
+
+        // when - adding it doesn't wait for the query
+        recentAttempts.add(attempt(2L));
+        release.countDown();
+
+        // then
+        then(load.get(5, TimeUnit.SECONDS))
+                .extracting(ChallengeAttempt::getId)
+                .containsExactly(2L, 1L);
+        then(recentAttempts.get("john_doe", alias -> List.of()))
+                .extracting(ChallengeAttempt::getId)
+                .containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void failedLoadIsNotKeptTest() {
+        // given
+        Throwable thrown = catchThrowable(() -> recentAttempts.get("john_doe", alias -> {
+            throw new IllegalStateException("database down");
+        }));
+
+        // when
+        List<ChallengeAttempt> attempts = recentAttempts.get("john_doe", alias -> List.of(attempt(1L)));
+
+        // then
+        then(thrown).isInstanceOf(IllegalStateException.class);
+        then(attempts).extracting(ChallengeAttempt::getId).containsExactly(1L);
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ChallengeAttempt attempt(final long id) {
+        return new ChallengeAttempt(id, user, 50, 60, 3000, true);
+    }
+}
@@ -0,0 +1,72 @@
+package microservices.book.multiplication.serviceclients;
+
+import microservices.book.multiplication.challenge.ChallengeSolvedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.assertj.core.api.BDDAssertions.thenThrownBy;
+
+class ChallengeSolvedEventBinaryConverterTest {
+
+    private final Jackson2JsonMessageConverter jsonConverter = new Jackson2JsonMessageConverter();
+    private final ChallengeSolvedEventBinaryConverter converter =
+            new ChallengeSolvedEventBinaryConverter(jsonConverter);
+
+    @Test
+    public void eventIsConvertedToBinaryTest() {
+        // given
+        var event = new ChallengeSolvedEvent(4815162342L, true, 42, 37, 1234L, "jürgen");
+
+        // when
+        Message message = converter.toMessage(event, new MessageProperties());
+
+        // then - much smaller than the JSON, and it can be read back
+        then(message.getMessageProperties().getContentType())
+                .isEqualTo(ChallengeSolvedEventBinaryConverter.CONTENT_TYPE);
+        then(message.getBody()).hasSize(28 + "jürgen".getBytes(StandardCharsets.UTF_8).length);
+        then(message.getBody().length).isLessThan(
+                jsonConverter.toMessage(event, new MessageProperties()).getBody().length / 2);
+        then(converter.fromMessage(message)).isEqualTo(event);
+    }
+
+    @Test
+    public void eventWithoutAliasTest() {
+        // given
+        var event = new ChallengeSolvedEvent(1L, false, 10, 10, 2L, null);
+
+        // when
+        Message message = converter.toMessage(event, new MessageProperties());
+
+        // then
+        then(converter.fromMessage(message)).isEqualTo(event);
+    }
+
+    @Test
+    public void otherObjectsAreConvertedToJsonTest() {
+        // when
+        Message message = converter.toMessage(Map.of("key", "value"), new MessageProperties());
+
+        // then
+        then(message.getMessageProperties().getContentType())
+                .isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+        then(converter.fromMessage(message)).isEqualTo(Map.of("key", "value"));
+    }
+
+    @Test
+    public void malformedMessageTest() {
+        // given
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(ChallengeSolvedEventBinaryConverter.CONTENT_TYPE);
+
+        // then
+        thenThrownBy(() -> converter.fromMessage(new Message(new byte[]{1, 2, 3}, properties)))
+                .isInstanceOf(MessageConversionException.class);
+    }
+}
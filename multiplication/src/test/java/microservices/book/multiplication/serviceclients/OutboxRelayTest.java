@@ -0,0 +1,88 @@
+package microservices.book.multiplication.serviceclients;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    private OutboxRelay outboxRelay;
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private RabbitOperations operations;
+
+    @BeforeEach
+    public void setUp() {
+        outboxRelay = new OutboxRelay(outboxEventRepository, rabbitTemplate,
+                transactionTemplate, 2, 1000);
+        given(transactionTemplate.execute(any()))
+                .will(invocation -> invocation.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(null));
+        given(rabbitTemplate.invoke(any()))
+                .will(invocation -> invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0)
+                        .doInRabbit(operations));
+    }
+
+    @Test
+    public void publishesBatchesUntilEmptyTest() {
+        // given - a full batch and then a partial one
+        OutboxEvent first = outboxEvent(1L), second = outboxEvent(2L), third = outboxEvent(3L);
+        given(outboxEventRepository.findAllByOrderByIdAsc(Limit.of(2)))
+                .willReturn(List.of(first, second), List.of(third));
+
+        // when
+        outboxRelay.flush();
+
+        // then - every batch is confirmed before deleting it
+        var inOrder = inOrder(operations, outboxEventRepository);
+        inOrder.verify(operations).send("test.topic", "attempt.correct", first.toMessage());
+        inOrder.verify(operations).send("test.topic", "attempt.correct", second.toMessage());
+        inOrder.verify(operations).waitForConfirmsOrDie(1000);
+        inOrder.verify(outboxEventRepository).deleteAllByIdIn(List.of(1L, 2L));
+        inOrder.verify(operations).send("test.topic", "attempt.correct", third.toMessage());
+        inOrder.verify(operations).waitForConfirmsOrDie(1000);
+        inOrder.verify(outboxEventRepository).deleteAllByIdIn(List.of(3L));
+    }
+
+    @Test
+    public void keepsEventsIfNotConfirmedTest() {
+        // given
+        given(outboxEventRepository.findAllByOrderByIdAsc(Limit.of(2)))
+                .willReturn(List.of(outboxEvent(1L)));
+        willThrow(new AmqpException("nack")).given(operations).waitForConfirmsOrDie(1000);
+
+        // when
+        outboxRelay.flush();
+
+        // then - they'll be published again on the next run
+        verify(outboxEventRepository, never()).deleteAllByIdIn(any());
+    }
+
+    private static OutboxEvent outboxEvent(final long id) {
+        return new OutboxEvent(id, "test.topic", "attempt.correct",
+                MessageProperties.CONTENT_TYPE_JSON, ("{\"attemptId\":" + id + "}").getBytes(), 0);
+    }
+}
@@ -0,0 +1,171 @@
+package microservices.book.multiplication.user;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserServiceImplTest {
+
+    private UserService userService;
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        userService = new UserServiceImpl(userRepository, transactionManager,
+                100, Duration.ofMinutes(10));
+    }
+
+    @Test
+    public void existingUserIsCachedTest() {
+        // given
+        User existingUser = new User(1L, "john_doe");
+        given(userRepository.findByAlias("john_doe"))
+                .willReturn(Optional.of(existingUser));
+
+        // when
+        User first = userService.findOrCreateByAlias("john_doe");
+        User second = userService.findOrCreateByAlias("john_doe");
+
+        // then
+        then(first).isEqualTo(existingUser);
+        then(second).isEqualTo(existingUser);
+        verify(userRepository).findByAlias("john_doe");
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    public void newUserIsCreatedTest() {
+        // given
+        given(userRepository.findByAlias("john_doe"))
+                .willReturn(Optional.empty());
+        given(userRepository.save(new User("john_doe")))
+                .willReturn(new User(1L, "john_doe"));
+
+        // when
+        User user = userService.findOrCreateByAlias("john_doe");
+
+        // then
+        then(user).isEqualTo(new User(1L, "john_doe"));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void userCreatedConcurrentlyTest() {
+        // given - another instance creates the user after our query
+        given(userRepository.findByAlias("john_doe"))
+                .willReturn(Optional.empty(), Optional.of(new User(1L, "john_doe")));
+        given(userRepository.save(new User("john_doe")))
+                .willThrow(new DataIntegrityViolationException("uk_users_alias"));
+
+        // when
+        User user = userService.findOrCreateByAlias("john_doe");
+
+        // then
+        then(user).isEqualTo(new User(1L, "john_doe"));
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    public void concurrentCallsForTheSameAliasShareTheLoadTest() throws Exception {
+        // given a query that waits until the second call is running
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(userRepository.findByAlias("john_doe")).will(invocation -> {
+            queryStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(new User(1L, "john_doe"));
+        });
+        given(userRepository.findByAlias("jane_doe"))
+                .willReturn(Optional.of(new User(2L, "jane_doe")));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CompletableFuture<User> first = CompletableFuture.supplyAsync(
+                () -> userService.findOrCreateByAlias("john_doe"), executor);
+        queryStarted.await(5, TimeUnit.SECONDS);
+
+        // when
+        CompletableFuture<User> second = CompletableFuture.supplyAsync(
+                () -> userService.findOrCreateByAlias("john_doe"), executor);
+        User other = userService.findOrCreateByAlias("jane_doe");
+        release.countDown();
+
+        // then - other aliases don't wait for the query
+        then(other).isEqualTo(new User(2L, "jane_doe"));
+        then(first.get(5, TimeUnit.SECONDS)).isEqualTo(new User(1L, "john_doe"));
+        then(second.get(5, TimeUnit.SECONDS)).isEqualTo(new User(1L, "john_doe"));
+        verify(userRepository).findByAlias("john_doe");
+        executor.shutdown();
+    }
+
+    @Test
+    public void aliasesAreCachedAndOnlyMissingOnesQueriedTest() {
+        // given
+        given(userRepository.findAllByIdIn(anyList())).will(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id != 3L)
+                    .map(id -> new User(id, "user_" + id)).toList();
+        });
+        userService.findAliasesByIds(List.of(1L, 2L));
+
+        // when
+        Map<Long, String> aliases = userService.findAliasesByIds(List.of(1L, 2L, 2L, 3L, 4L));
+
+        // then the unknown user is left out
+        then(aliases).containsOnly(Map.entry(1L, "user_1"), Map.entry(2L, "user_2"),
+                Map.entry(4L, "user_4"));
+        verify(userRepository).findAllByIdIn(List.of(1L, 2L));
+        verify(userRepository).findAllByIdIn(argThat(ids -> ids.size() == 2
+                && ids.containsAll(List.of(3L, 4L))));
+    }
+
+    @Test
+    public void concurrentLookupsShareTheQueryTest() throws Exception {
+        // given a query that waits until the second lookup is running
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(userRepository.findAllByIdIn(List.of(1L))).will(invocation -> {
+            queryStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(new User(1L, "john_doe"));
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CompletableFuture<Map<Long, String>> first = CompletableFuture.supplyAsync(
+                () -> userService.findAliasesByIds(List.of(1L)), executor);
+        queryStarted.await(5, TimeUnit.SECONDS);
+
+        // when
+        CompletableFuture<Map<Long, String>> second = CompletableFuture.supplyAsync(
+                () -> userService.findAliasesByIds(List.of(1L)), executor);
+        Thread.sleep(100);
+        release.countDown();
+
+        // then
+        then(first.get(5, TimeUnit.SECONDS)).containsOnly(Map.entry(1L, "john_doe"));
+        then(second.get(5, TimeUnit.SECONDS)).containsOnly(Map.entry(1L, "john_doe"));
+        verify(userRepository).findAllByIdIn(List.of(1L));
+        executor.shutdown();
+    }
+}